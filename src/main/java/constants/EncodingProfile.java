@@ -0,0 +1,58 @@
+package constants;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This enum is responsible for storing the encoder settings a creation's video may be rendered with
+ * @author Tait & Alex
+ */
+public enum EncodingProfile {
+    DRAFT("Draft", "ultrafast", 28, 360, 96),
+    STANDARD("Standard", "slow", 19, 0, 192),
+    ARCHIVE("Archive", "veryslow", 16, 0, 320);
+
+    private final String profileName;
+    private final String preset; // The libx264 preset, slower presets compress better
+    private final int crf; // The libx264 constant rate factor, lower values are higher quality
+    private final int height; // The height the video is scaled to, or 0 to keep the size of the images
+    private final int audioBitrate; // The AAC bitrate in kbit/s
+
+    EncodingProfile(String name, String preset, int crf, int height, int audioBitrate) {
+        profileName = name;
+        this.preset = preset;
+        this.crf = crf;
+        this.height = height;
+        this.audioBitrate = audioBitrate;
+    }
+
+    @Override
+    public String toString() { // Allows us to display the profile name in the dropdown in NameView
+        return profileName;
+    }
+
+    /**
+     * Get the FFmpeg options that encode the video stream with this profile
+     * @return The video encoder arguments
+     */
+    public List<String> getVideoOptions() {
+        return Arrays.asList("-c:v", "libx264", "-crf", Integer.toString(crf), "-preset", preset);
+    }
+
+    /**
+     * Get the FFmpeg options that encode the audio stream with this profile
+     * @return The audio encoder arguments
+     */
+    public List<String> getAudioOptions() {
+        return Arrays.asList("-c:a", "libfdk_aac", "-b:a", audioBitrate + "k", "-ac", "2");
+    }
+
+    /**
+     * Get the FFmpeg filter that scales the video down for this profile, to be placed after the text is drawn so the
+     * text scales with the video
+     * @return The scale filter beginning with a comma, or an empty string if the video is not scaled
+     */
+    public String getScaleFilter() {
+        return height > 0 ? String.format(",scale=-2:%d", height) : "";
+    }
+}
@@ -10,7 +10,8 @@ public enum Filename {
     SEARCH_TEXT("search.txt"),
     VIDEO("video.mp4"),
     CREATION("creation.ser"),
-    THUMBNAIL("thumbnail.jpg");
+    THUMBNAIL("thumbnail.jpg"),
+    CHUNKS("chunks");
 
     private final String extension;
 
@@ -10,8 +10,12 @@ public enum Folder {
     CREATIONS(".bin/creations/"),
     TEMP(".bin/temp/"),
     TEMP_CHUNKS(".bin/temp/chunks/"),
+    TEMP_BUILDS(".bin/temp/builds/"),
     MUSIC(".bin/music/"),
-    IMAGES(".bin/images/");
+    IMAGES(".bin/images/"),
+    ARTIFACT_CACHE(".bin/cache/artifacts/"),
+    SPEECH_CACHE(".bin/cache/speech/"),
+    HTTP_CACHE(".bin/cache/http/");
 
     private final File folder;
 
@@ -3,10 +3,12 @@ package controllers;
 import constants.View;
 import events.CreationProcessEvent;
 import events.SwitchSceneEvent;
+import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.Region;
@@ -15,13 +17,12 @@ import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
-import main.ProcessRunner;
 import models.creation.CreationProcessManager;
 import models.chunk.Chunk;
 import models.chunk.ChunkFileBuilder;
 import models.chunk.ChunkFileManager;
-import models.voice_synthesizer.EspeakVoiceSynthesizer;
 import models.voice_synthesizer.VoiceSynthesizer;
+import models.voice_synthesizer.VoiceSynthesizerRegistry;
 import views.ChunkCell;
 
 import java.io.File;
@@ -58,7 +59,7 @@ public class ChunkView extends Controller {
     // The iterator is used for the "Playback All" functionality
     private ReadOnlyObjectWrapper<Iterator<Chunk>> chunkIterator = new ReadOnlyObjectWrapper<>();
     // The preview process is used to preview a single highlighted chunk
-    private ReadOnlyObjectWrapper<ProcessRunner> previewProcess = new ReadOnlyObjectWrapper<>();
+    private ReadOnlyObjectWrapper<Task<Void>> previewProcess = new ReadOnlyObjectWrapper<>();
 
     /**
      * The initialize method is responsible for setting up the scene & the setting up the listeners and handlers for each
@@ -164,14 +165,17 @@ public class ChunkView extends Controller {
         // Binding the search result with a stored field in the CreationProcessManager singleton
         searchResult.textProperty().bindBidirectional(creationProcessManager.searchTextProperty());
 
-        // Setting up the voice dropdown with espeak voices
-        ObservableList<VoiceSynthesizer> voices = FXCollections.observableArrayList();
-        for (EspeakVoiceSynthesizer.Voice voice: EspeakVoiceSynthesizer.Voice.values()) {
-            voices.add(new EspeakVoiceSynthesizer(voice));
-        }
+        // Setting up the voice dropdown with the voices of every installed engine
+        ObservableList<VoiceSynthesizer> voices = FXCollections.observableArrayList(
+                VoiceSynthesizerRegistry.getInstance().getVoices());
         voiceDropdown.setItems(voices);
-        // Adding a listener to change the voice used for the chunk previewing/saving
-        voiceDropdown.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> voiceSynthesizer = newValue);
+        // Adding a listener to change the voice used for the chunk previewing/saving, starting its engine ahead of time
+        voiceDropdown.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+            voiceSynthesizer = newValue;
+            if (newValue != null) {
+                VoiceSynthesizerRegistry.getInstance().warmUp(newValue);
+            }
+        });
         // Selecting the first synthesizer by default
         voiceDropdown.getSelectionModel().select(0);
     }
@@ -192,6 +196,7 @@ public class ChunkView extends Controller {
             // Deselects the preview button after playback
             previewProcess.get().setOnSucceeded(event -> previewButton.setSelected(false));
             previewProcess.get().setOnCancelled(event -> previewButton.setSelected(false));
+            previewProcess.get().setOnFailed(event -> previewButton.setSelected(false));
         } else {
             if (previewProcess != null) { // Cancels other playback
                 previewProcess.get().cancel();
@@ -219,13 +224,19 @@ public class ChunkView extends Controller {
                 previewProcess.get().cancel();
             }
 
-            // Gets the chunk from the ChunkFileManager, and then plays it
-            File audioFile = ChunkFileManager.getInstance().getFile(chunksListView.getSelectionModel().getSelectedItem());
-            playMedia(audioFile);
+            // Gets the chunk from the ChunkFileManager, and then plays it once its audio has been synthesized
+            Chunk chunk = chunksListView.getSelectionModel().getSelectedItem();
+            ChunkFileManager.getInstance().whenReady(chunk).whenComplete((audioFile, e) -> Platform.runLater(() -> {
+                if (e != null || !playbackButton.isSelected()) { // The audio failed, or playback was stopped meanwhile
+                    playbackButton.setSelected(false);
+                    return;
+                }
+                playMedia(audioFile);
 
-            // Deselects buttons after playback
-            mediaPlayer.setOnEndOfMedia(() -> playbackButton.setSelected(false));
-            mediaPlayer.setOnStopped(() -> playbackButton.setSelected(false));
+                // Deselects buttons after playback
+                mediaPlayer.setOnEndOfMedia(() -> playbackButton.setSelected(false));
+                mediaPlayer.setOnStopped(() -> playbackButton.setSelected(false));
+            }));
         } else {
             if (mediaPlayer != null) { // Cancels playback
                 mediaPlayer.stop();
@@ -367,10 +378,18 @@ public class ChunkView extends Controller {
 
             chunksListView.getSelectionModel().select(chunk);
 
-            File audioFile = ChunkFileManager.getInstance().getFile(chunksListView.getSelectionModel().getSelectedItem());
-
-            playMedia(audioFile);
-            mediaPlayer.setOnEndOfMedia(this::recursivePlayback);
+            // Plays the chunk once its audio has been synthesized, skipping it if the audio failed
+            ChunkFileManager.getInstance().whenReady(chunk).whenComplete((audioFile, e) -> Platform.runLater(() -> {
+                if (!playbackAllButton.isSelected()) { // Playback was stopped meanwhile
+                    return;
+                }
+                if (e != null) {
+                    recursivePlayback();
+                    return;
+                }
+                playMedia(audioFile);
+                mediaPlayer.setOnEndOfMedia(this::recursivePlayback);
+            }));
         } else {
             playbackAllButton.setSelected(false);
         }
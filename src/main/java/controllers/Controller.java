@@ -4,7 +4,6 @@ import events.CreationProcessEvent;
 import events.SwitchSceneEvent;
 import javafx.fxml.FXMLLoader;
 
-import java.util.concurrent.ExecutorService;
 
 /**
  * The abstract controller class is responsible for some small duplicate functionality across all controller classes
@@ -14,7 +13,6 @@ public abstract class Controller {
 
     FXMLLoader load; // Loader for scene switching
     Controller listener; // Used to store the parent Controller (ie. AdaptivePanel)
-    ExecutorService threadRunner; // Used for executing tasks & concurrent processes
 
     /**
      * Sets the parent controller
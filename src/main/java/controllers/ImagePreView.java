@@ -3,6 +3,7 @@ package controllers;
 import constants.View;
 import events.CreationProcessEvent;
 import events.SwitchSceneEvent;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -58,12 +59,18 @@ public class ImagePreView extends Controller {
         imageListView.setItems(images);
         imageListView.setCellFactory(param -> new ThumbnailCell()); // Setting the thumbnail cell factory
 
-        // Loading a new image if the selected image changes
+        // Loading a new image if the selected image changes, once it has downloaded
         imageListView.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-            loadedImage=ImageFileManager.getInstance().getFile(newValue);
-            if (loadedImage != null) {
-                loadImage(loadedImage, width, height);
+            if (newValue == null) {
+                return;
             }
+            ImageFileManager.getInstance().download(newValue).thenAccept(file -> Platform.runLater(() -> {
+                URL selected = imageListView.getSelectionModel().getSelectedItem(); // Compared as text, not URL.equals
+                if (selected != null && newValue.toExternalForm().equals(selected.toExternalForm())) {
+                    loadedImage = file;
+                    loadImage(loadedImage, width, height);
+                }
+            }));
         });
 
         // Disables the Up/Down button depending on the location of the selected image (eg. at the top Up is diasabled)
@@ -117,6 +124,9 @@ public class ImagePreView extends Controller {
      * @param height - the height we want the image to be
      */
     @FXML private void loadImage(File imageFile, double width, double height) {
+        if (imageFile == null) { // The selected image has not downloaded yet
+            return;
+        }
         BackgroundImage myBI;
         Image image = new Image("file:"+imageFile.getPath(), width, height, true, true);
         ImageView imageView = new ImageView();
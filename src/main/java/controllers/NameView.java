@@ -1,5 +1,6 @@
 package controllers;
 
+import constants.EncodingProfile;
 import constants.Music;
 import constants.View;
 import events.CreationProcessEvent;
@@ -36,6 +37,7 @@ public class NameView extends Controller {
     @FXML private ProgressBar progressBar;
 
     @FXML private ChoiceBox<Music> musicDropdown; // The dropdown for the different background music tracks the user can select
+    @FXML private ChoiceBox<EncodingProfile> qualityDropdown; // The dropdown for the encoding profile of the video
 
     @FXML private ToggleButton previewButton; // Allows previewing of the selected music track
     @FXML private Button submitButton; // Begins the creation process
@@ -102,6 +104,12 @@ public class NameView extends Controller {
             musicDropdown.getSelectionModel().select(creationProcessManager.getBackgroundMusic());
         }
 
+        // Populating the quality dropdown, so a quick draft can be made and rendered at full quality later
+        qualityDropdown.setItems(FXCollections.observableArrayList(EncodingProfile.values()));
+        qualityDropdown.getSelectionModel().select(creationProcessManager.getEncodingProfile());
+        qualityDropdown.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) ->
+                creationProcessManager.setEncodingProfile(newValue));
+
         // Binding the progress message to the status of the creation process (managed in FormManager)
         progressMessage.textProperty().bind(CreationProcessManager.getInstance().progressMessageProperty());
 
@@ -119,8 +127,8 @@ public class NameView extends Controller {
 
         CreationProcessManager creationProcessManager = CreationProcessManager.getInstance();
 
-        // Setting up the progress bar to an indeterminate animation & to show
-        progressBar.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        // Binding the progress bar to the progress of the creation process, which is indeterminate until it starts
+        progressBar.progressProperty().bind(creationProcessManager.progressProperty());
         progressMessage.setVisible(true);
         progressBar.setVisible(true);
 
@@ -137,6 +145,8 @@ public class NameView extends Controller {
                     alert.getDialogPane().setMinHeight(Region.USE_PREF_SIZE); // Credit to Di Kun Ong (dngo711) for this line
                     alert.showAndWait();
                     creationProcessManager.progressStateProperty().removeListener(this);
+                } else if (newValue==CreationFileBuilder.ProgressState.CANCELLED) {
+                    creationProcessManager.progressStateProperty().removeListener(this);
                 }
             }
         });
@@ -163,6 +173,7 @@ public class NameView extends Controller {
         alert.getDialogPane().setMinHeight(Region.USE_PREF_SIZE); // Credit to Di Kun Ong (dngo711) for this line
         alert.showAndWait();
         if (alert.getResult() == ButtonType.YES) {
+            CreationProcessManager.getInstance().cancelBuild(); // Stops the creation process if it has begun
             listener.handle(new CreationProcessEvent(this, CreationProcessEvent.Status.CANCEL_CREATE));
         }
     }
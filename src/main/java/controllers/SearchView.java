@@ -10,6 +10,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.scene.text.Text;
+import main.ThreadPool;
 import models.WikipediaSearcher;
 import models.creation.CreationProcessManager;
 import models.images.ImageSearcher;
@@ -18,7 +19,6 @@ import org.controlsfx.control.textfield.TextFields;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
 
 public class SearchView extends AdaptivePanel {
 
@@ -53,7 +53,7 @@ public class SearchView extends AdaptivePanel {
                         return null;
                     }
                 };
-                Executors.newSingleThreadExecutor().submit(suggestionSearcher);
+                ThreadPool.NETWORK.submit(suggestionSearcher);
             }
         });
         searchField.setOnKeyPressed(event -> {
@@ -96,7 +96,7 @@ public class SearchView extends AdaptivePanel {
             pageSearcher.setOnFailed(event -> {
                 loadingMessage.setText(String.format("Sorry, there are no results for \"%s\"", searchField.getText()));
             });
-            Executors.newSingleThreadExecutor().submit(pageSearcher);
+            ThreadPool.NETWORK.submit(pageSearcher);
         }
     }
 
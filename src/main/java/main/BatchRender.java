@@ -0,0 +1,339 @@
+package main;
+
+import constants.EncodingProfile;
+import constants.Music;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import models.HttpService;
+import models.cache.SpeechCache;
+import models.chunk.Chunk;
+import models.chunk.ChunkFileBuilder;
+import models.chunk.ChunkFileManager;
+import models.creation.Creation;
+import models.creation.CreationFileBuilder;
+import models.creation.CreationFileManager;
+import models.creation.RenderScheduler;
+import models.images.ImageFileManager;
+import models.voice_synthesizer.EspeakVoiceSynthesizer;
+import models.voice_synthesizer.VoiceSynthesizer;
+import models.voice_synthesizer.VoiceSynthesizerRegistry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchRender is a headless entry point that renders every creation described by a JSON manifest, without showing the
+ * user interface. The creations are built by the same {@link ChunkFileManager}, {@link CreationFileBuilder} and
+ * {@link RenderScheduler} as the application, then a report of each creation is printed. The manifest is either an
+ * array of creations, or an object with a {@code "creations"} array and an optional {@code "parallelism"}:
+ * <pre>
+ * {
+ *   "parallelism": 4,
+ *   "creations": [{
+ *     "name": "Dogs",
+ *     "searchTerm": "dog",
+ *     "searchText": "Optional, the Wikipedia text the chunks were taken from",
+ *     "chunks": [{"text": "Dogs are loyal.", "voice": "BRITISH"}],
+ *     "images": ["https://live.staticflickr.com/...jpg", "/home/user/dog.jpg"],
+ *     "music": "TRACK_ONE",
+ *     "profile": "STANDARD"
+ *   }]
+ * }
+ * </pre>
+ * Usage: {@code java -cp VARpedia-all.jar main.BatchRender manifest.json [--parallelism N]}. The exit value is 0 if
+ * every creation was rendered, 1 if any failed and 2 if the manifest could not be read. BatchRender starts the JavaFX
+ * runtime without a window, so headless machines need a virtual display such as {@code xvfb-run}.
+ * @author Tait & Alex
+ */
+public class BatchRender extends Application {
+
+    /**
+     * The result of rendering one creation of the manifest
+     */
+    private static class Result {
+        private final String name;
+        private final boolean succeeded;
+        private final String message;
+        private final double seconds;
+
+        private Result(String name, boolean succeeded, String message, double seconds) {
+            this.name = name;
+            this.succeeded = succeeded;
+            this.message = message;
+            this.seconds = seconds;
+        }
+    }
+
+    private static File manifestFile;
+    private static int parallelismOverride; // The parallelism given on the command line, or 0 to use the manifest's
+
+    public static void main(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--parallelism") && i + 1 < args.length) {
+                try {
+                    parallelismOverride = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+            } else if (manifestFile == null) {
+                manifestFile = new File(args[i]);
+            } else {
+                usage();
+            }
+        }
+        if (manifestFile == null) {
+            usage();
+        }
+        launch(args);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchRender <manifest.json> [--parallelism N]");
+        System.exit(2);
+    }
+
+    /* Start the batch off the FX thread, which must stay free to run the builders' callbacks */
+    @Override
+    public void start(Stage primaryStage) {
+        Platform.setImplicitExit(false);
+        Thread batch = new Thread(() -> {
+            int exitValue = run();
+            ThreadPool.shutdownAll(30, TimeUnit.SECONDS); // Letting the build folders be removed
+            Platform.exit();
+            System.exit(exitValue);
+        }, "BatchRender");
+        batch.start();
+    }
+
+    /**
+     * Read the manifest, render each creation and print the report
+     * @return The exit value of the batch
+     */
+    private int run() {
+        JSONArray entries;
+        int parallelism;
+        try {
+            String json = new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8).trim();
+            JSONObject manifest = json.startsWith("[") ? new JSONObject().put("creations", new JSONArray(json))
+                    : new JSONObject(json);
+            entries = manifest.getJSONArray("creations");
+            parallelism = parallelismOverride > 0 ? parallelismOverride :
+                    manifest.optInt("parallelism", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        } catch (IOException | JSONException e) {
+            System.err.println("Could not read manifest " + manifestFile + ": " + e.getMessage());
+            return 2;
+        }
+
+        RenderScheduler.getInstance().setMaxConcurrentRenders(parallelism);
+        System.out.printf("Rendering %d creations, %d at a time%n", entries.length(), parallelism);
+
+        /* Each worker prepares the chunks and images of a creation, then waits for it to render. The workers block
+         * until their creation has rendered, so they have their own pool rather than taking a shared ThreadPool */
+        List<Result> results = Collections.synchronizedList(new ArrayList<>());
+        Set<String> names = Collections.synchronizedSet(new HashSet<>());
+        for (Creation creation : CreationFileManager.getInstance().getItems()) {
+            names.add(creation.getName());
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.optJSONObject(i);
+            int index = i;
+            workers.submit(() -> {
+                Result result = render(index, entry, names);
+                results.add(result);
+                System.out.printf("[%d/%d] %s %s%n", results.size(), entries.length(),
+                        result.succeeded ? "Rendered" : "Failed", result.name);
+            });
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return 1;
+        }
+
+        /* Print the report */
+        int failed = 0;
+        System.out.println();
+        for (Result result : results) {
+            System.out.printf("%-8s %-30s %7.1fs  %s%n", result.succeeded ? "OK" : "FAILED", result.name,
+                    result.seconds, result.message);
+            if (!result.succeeded) {
+                failed++;
+            }
+        }
+        System.out.printf("%d rendered, %d failed%n", results.size() - failed, failed);
+        for (ThreadPool pool : ThreadPool.values()) {
+            System.out.println(pool);
+        }
+        System.out.println();
+        System.out.print(ProcessMetrics.getInstance().getSummary());
+        System.out.println(SpeechCache.getInstance());
+        System.out.println(VoiceSynthesizerRegistry.getInstance().getWarmProcessPool());
+        VoiceSynthesizerRegistry.getInstance().shutdown();
+        System.out.println();
+        System.out.print(HttpService.getInstance().getSummary());
+        HttpService.getInstance().shutdown();
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Render one creation of the manifest, waiting until it has finished
+     * @param index The index of the creation in the manifest
+     * @param entry The creation's manifest entry
+     * @param names The names of existing creations, which the creation's name is added to
+     * @return The result of rendering the creation
+     */
+    private Result render(int index, JSONObject entry, Set<String> names) {
+        long start = System.nanoTime();
+        String name = entry == null ? "#" + index : entry.optString("name", "#" + index);
+        try {
+            if (entry == null) {
+                throw new IllegalArgumentException("entry is not an object");
+            }
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("a creation already exists with that name");
+            }
+            String searchTerm = entry.getString("searchTerm");
+
+            /* Synthesize the chunks together, waiting for all of them */
+            List<ChunkFileBuilder> builders = new ArrayList<>();
+            ChunkFileManager chunkFileManager = ChunkFileManager.getInstance();
+            JSONArray chunkEntries = entry.getJSONArray("chunks");
+            for (int i = 0; i < chunkEntries.length(); i++) {
+                JSONObject chunkEntry = chunkEntries.getJSONObject(i);
+                VoiceSynthesizer voice = parseVoice(chunkEntry.optString("voice",
+                        EspeakVoiceSynthesizer.Voice.BRITISH.name()));
+                ChunkFileBuilder builder = chunkFileManager.getBuilder();
+                builder.setText(chunkEntry.getString("text"));
+                builder.setVoiceSynthesizer(voice);
+                builders.add(builder);
+            }
+            List<Chunk> chunks = chunkFileManager.createAll(builders);
+            for (int i = 0; i < chunks.size(); i++) {
+                try {
+                    chunkFileManager.whenReady(chunks.get(i)).join();
+                } catch (CompletionException e) {
+                    throw new IOException("could not synthesize chunk " + (i + 1));
+                }
+            }
+
+            /* Download the images, local files are copied like downloads */
+            List<URL> images = new ArrayList<>();
+            JSONArray imageEntries = entry.getJSONArray("images");
+            for (int i = 0; i < imageEntries.length(); i++) {
+                URL image = parseImage(imageEntries.getString(i));
+                if (ImageFileManager.getInstance().getFile(image) == null) {
+                    throw new IOException("could not download image " + image);
+                }
+                images.add(image);
+            }
+            if (images.isEmpty()) {
+                throw new IllegalArgumentException("no images");
+            }
+
+            /* Render the creation */
+            CreationFileBuilder builder = CreationFileManager.getInstance().getBuilder();
+            builder.setName(name);
+            builder.setSearchTerm(searchTerm);
+            builder.setSearchText(entry.optString("searchText", ""));
+            builder.setImages(images);
+            builder.setBackgroundMusic(parseMusic(entry.optString("music", Music.TRACK_NONE.name())));
+            builder.setEncodingProfile(EncodingProfile.valueOf(
+                    entry.optString("profile", EncodingProfile.STANDARD.name()).toUpperCase()));
+            builder.setRenderMode(CreationFileBuilder.RenderMode.FUSED);
+            builder.setChunks(chunks);
+
+            CountDownLatch finished = new CountDownLatch(1);
+            builder.stateProperty().addListener((observable, oldValue, newValue) -> {
+                if (newValue == CreationFileBuilder.ProgressState.SUCCEEDED ||
+                        newValue == CreationFileBuilder.ProgressState.FAILED ||
+                        newValue == CreationFileBuilder.ProgressState.CANCELLED) {
+                    finished.countDown();
+                }
+            });
+            String[] lastStage = {""};
+            builder.progressMessageProperty().addListener((observable, oldValue, newValue) -> lastStage[0] = newValue);
+
+            RenderScheduler.getInstance().submit(builder);
+            finished.await();
+
+            /* The chunks are only needed by this creation's build, which copies them */
+            for (Chunk chunk : chunks) {
+                chunkFileManager.delete(chunk);
+            }
+
+            boolean succeeded = builder.getState() == CreationFileBuilder.ProgressState.SUCCEEDED;
+            return new Result(name, succeeded, succeeded ? "" : lastStage[0], seconds(start));
+        } catch (Exception e) {
+            return new Result(name, false, e.getMessage(), seconds(start));
+        }
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Parse a voice by the display name of any installed engine's voice, such as "Scottish Female", or an espeak voice
+     * by its enum name, such as {@code SCOTTISH_F}
+     */
+    static VoiceSynthesizer parseVoice(String voice) {
+        VoiceSynthesizer synthesizer = VoiceSynthesizerRegistry.getInstance().findVoice(voice);
+        if (synthesizer != null) {
+            return synthesizer;
+        }
+        for (EspeakVoiceSynthesizer.Voice value : EspeakVoiceSynthesizer.Voice.values()) {
+            if (value.name().equalsIgnoreCase(voice) || value.getName().equalsIgnoreCase(voice)) {
+                return new EspeakVoiceSynthesizer(value);
+            }
+        }
+        throw new IllegalArgumentException("unknown voice " + voice);
+    }
+
+    /**
+     * Parse a music track by its enum name, such as {@code TRACK_ONE}, or its genre, such as "Jazz"
+     */
+    static Music parseMusic(String music) {
+        for (Music value : Music.values()) {
+            if (value.name().equalsIgnoreCase(music) || value.toString().equalsIgnoreCase(music)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("unknown music " + music);
+    }
+
+    /**
+     * Parse an image as a URL, or as a local file path if it is not a URL
+     */
+    static URL parseImage(String image) throws MalformedURLException {
+        try {
+            return URI.create(image).toURL();
+        } catch (IllegalArgumentException | MalformedURLException e) { // Not an absolute URL, such as a relative path
+            File file = new File(image);
+            if (!file.isFile()) {
+                throw new MalformedURLException("no such image " + image);
+            }
+            return file.toURI().toURL();
+        }
+    }
+}
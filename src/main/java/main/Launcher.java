@@ -0,0 +1,13 @@
+package main;
+
+/**
+ * Launcher is the entry point of the fat jar. The JavaFX runtime is on the classpath rather than the module path in
+ * the fat jar, and Java refuses to launch a main class that extends {@link javafx.application.Application} in that
+ * case, so this class starts {@link Main} instead
+ * @author Tait & Alex
+ */
+public class Launcher {
+    public static void main(String[] args) {
+        Main.main(args);
+    }
+}
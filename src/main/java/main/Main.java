@@ -5,8 +5,18 @@ import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.Stage;
+import models.HttpService;
+import models.cache.SpeechCache;
 import models.images.ImageFileManager;
+import models.voice_synthesizer.VoiceSynthesizerRegistry;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the main class, which is responsible for actually launching the application
@@ -27,6 +37,10 @@ public class Main extends Application {
             Scene scene = new Scene(layout);
             primaryStage.setScene(scene);
 
+            // Ctrl+Shift+M shows how long each stage of external programs has taken
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.M, KeyCombination.SHORTCUT_DOWN,
+                    KeyCombination.SHIFT_DOWN), Main::showProcessMetrics);
+
             // Maximising the window to begin with, then setting the minimum resizability
             primaryStage.setMaximized(true);
             primaryStage.setResizable(true);
@@ -36,6 +50,12 @@ public class Main extends Application {
             // When the stage is closed, the cached images are cleared (as per flickr terms and conditions) and threads closed
             primaryStage.setOnCloseRequest(event -> {
                 ImageFileManager.getInstance().clearImages();
+                VoiceSynthesizerRegistry.getInstance().shutdown(); // Killing the idle warm processes
+                HttpService.getInstance().shutdown();
+                ThreadPool.shutdownAll(5, TimeUnit.SECONDS); // Letting queued clean up finish
+                if (Boolean.getBoolean("varpedia.metrics")) {
+                    System.err.print(ProcessMetrics.getInstance().getSummary());
+                }
                 Platform.exit();
                 System.exit(0);
             });
@@ -46,4 +66,23 @@ public class Main extends Application {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Show the summary of {@link ProcessMetrics} in a dialog
+     */
+    private static void showProcessMetrics() {
+        TextArea summary = new TextArea(ProcessMetrics.getInstance().getSummary() + "\n" + SpeechCache.getInstance()
+                + "\n" + VoiceSynthesizerRegistry.getInstance().getWarmProcessPool() + "\n\n"
+                + HttpService.getInstance().getSummary());
+        summary.setEditable(false);
+        summary.setStyle("-fx-font-family: monospace");
+        summary.setPrefSize(960, 400);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Process Metrics");
+        alert.setHeaderText("Time taken by each stage of external programs");
+        alert.getDialogPane().setContent(summary);
+        alert.setResizable(true);
+        alert.show();
+    }
 }
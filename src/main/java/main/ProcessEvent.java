@@ -0,0 +1,50 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * ProcessEvent is the Java Flight Recorder event committed for every external program that is run, so recordings
+ * show each espeak and FFmpeg call alongside the application's threads. Its duration is the wall time of the process.
+ * Record with {@code java -XX:StartFlightRecording=filename=varpedia.jfr ...}
+ * @author Tait & Alex
+ */
+@Name("varpedia.Process")
+@Label("External Process")
+@Category({"VARpedia", "Process"})
+@Description("An external program run by ProcessRunner or ProcessPipeline")
+public class ProcessEvent extends Event {
+    @Label("Program")
+    String program;
+
+    @Label("Stage")
+    @Description("The stage of work the program was run for")
+    String stage;
+
+    @Label("Arguments")
+    String arguments;
+
+    @Label("Exit Value")
+    int exitValue;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long cpuTime;
+
+    @Label("Peak RSS")
+    @DataAmount
+    long peakRss;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+}
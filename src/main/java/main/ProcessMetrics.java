@@ -0,0 +1,135 @@
+package main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * ProcessMetrics is responsible for keeping the {@link ProcessStats} of recent external program runs, grouped by
+ * stage, so the stages that take the most time on this machine can be found. It summarises each stage by the 50th and
+ * 95th percentiles of its wall and CPU time.
+ * <p>
+ * The summary is shown in the application with Ctrl+Shift+M, printed at the end of a {@link BatchRender}, and
+ * printed when the application closes if the {@code varpedia.metrics} system property is {@code true}.
+ * @author Tait & Alex
+ */
+public class ProcessMetrics {
+    /**
+     * The number of most recent runs kept for each stage
+     */
+    private static final int RUNS_PER_STAGE = 500;
+
+    private volatile static ProcessMetrics instance;
+
+    private final Map<String, Deque<ProcessStats>> runs = new TreeMap<>(); // The recent runs of each stage
+    private final Map<String, Integer> failures = new TreeMap<>(); // The number of failed runs of each stage
+
+    /**
+     * Private constructor for singleton
+     */
+    private ProcessMetrics() {
+    }
+
+    /**
+     * Get the singleton instance of ProcessMetrics
+     * @return The instance
+     */
+    public static ProcessMetrics getInstance() {
+        if (instance == null) {
+            synchronized (ProcessMetrics.class) {
+                if (instance == null) {
+                    instance = new ProcessMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Record a finished run
+     * @param stats The stats of the run
+     */
+    public synchronized void record(ProcessStats stats) {
+        Deque<ProcessStats> stageRuns = runs.computeIfAbsent(stats.getStage(), stage -> new ArrayDeque<>());
+        stageRuns.addLast(stats);
+        if (stageRuns.size() > RUNS_PER_STAGE) {
+            stageRuns.removeFirst();
+        }
+        if (stats.getExitValue() != 0) {
+            failures.merge(stats.getStage(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Get the recent runs of a stage
+     * @param stage The stage, such as {@code convertVideo}
+     * @return The runs, oldest first
+     */
+    public synchronized List<ProcessStats> getRuns(String stage) {
+        Deque<ProcessStats> stageRuns = runs.get(stage);
+        return stageRuns == null ? Collections.emptyList() : new ArrayList<>(stageRuns);
+    }
+
+    /**
+     * Forget every recorded run
+     */
+    public synchronized void clear() {
+        runs.clear();
+        failures.clear();
+    }
+
+    /**
+     * Summarise the recorded runs as a table with a row for each stage
+     * @return The summary, or a message saying nothing has been run
+     */
+    public synchronized String getSummary() {
+        if (runs.isEmpty()) {
+            return "No external programs have been run";
+        }
+        StringBuilder summary = new StringBuilder(String.format("%-26s %6s %6s %9s %9s %9s %9s %8s %10s %10s%n",
+                "stage", "runs", "failed", "wall p50", "wall p95", "cpu p50", "cpu p95", "peak MB", "in MB", "out MB"));
+        for (Map.Entry<String, Deque<ProcessStats>> entry : runs.entrySet()) {
+            List<ProcessStats> stageRuns = new ArrayList<>(entry.getValue());
+            long peakRss = 0;
+            long bytesIn = 0;
+            long bytesOut = 0;
+            for (ProcessStats stats : stageRuns) {
+                peakRss = Math.max(peakRss, stats.getPeakRss());
+                bytesIn += stats.getBytesIn();
+                bytesOut += stats.getBytesOut();
+            }
+            summary.append(String.format("%-26s %6d %6d %8.2fs %8.2fs %8.2fs %8.2fs %8d %10.1f %10.1f%n",
+                    entry.getKey(), stageRuns.size(), failures.getOrDefault(entry.getKey(), 0),
+                    percentile(stageRuns, stats -> stats.getWallTime().toMillis(), 50) / 1000.0,
+                    percentile(stageRuns, stats -> stats.getWallTime().toMillis(), 95) / 1000.0,
+                    percentile(stageRuns, stats -> stats.getCpuTime().toMillis(), 50) / 1000.0,
+                    percentile(stageRuns, stats -> stats.getCpuTime().toMillis(), 95) / 1000.0,
+                    peakRss / (1024 * 1024), bytesIn / (1024.0 * 1024), bytesOut / (1024.0 * 1024)));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Get a percentile of a measure of some runs, by the nearest-rank method
+     * @param runs The runs, of which there is at least one
+     * @param measure The measure of each run
+     * @param percentile The percentile, from 0 to 100
+     * @return The value at the percentile
+     */
+    private static long percentile(List<ProcessStats> runs, ToLongFunction<ProcessStats> measure, int percentile) {
+        long[] values = runs.stream().mapToLong(measure).sorted().toArray();
+        int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+        return values[Math.max(rank - 1, 0)];
+    }
+
+    /* Represent the metrics by their summary */
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
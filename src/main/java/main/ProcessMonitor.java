@@ -0,0 +1,131 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * ProcessMonitor measures one run of an external program. It is created just before the process starts, sampled while
+ * the process runs, and finished once it exits, which records the {@link ProcessStats} in {@link ProcessMetrics} and
+ * commits a {@link ProcessEvent}. The bytes the program reads and writes are its I/O counters in {@code /proc/<pid>/io},
+ * which count files, pipes and sockets alike, so output piped into another program or a concat list read by FFmpeg are
+ * counted too. Processes run outside of {@link ProcessRunner}, such as those kept warm in a pool, are measured by
+ * creating a monitor when they are given their work.
+ * @author Tait & Alex
+ */
+public class ProcessMonitor {
+    /**
+     * The longest command line kept in the stats
+     */
+    private static final int MAX_ARGUMENTS_LENGTH = 240;
+
+    private final List<String> command;
+    private final String program;
+    private final String stage;
+    private final ProcessEvent event = new ProcessEvent();
+    private final long start = System.nanoTime();
+    private Duration cpuTime = Duration.ZERO;
+    private long peakRss;
+    private long bytesIn;
+    private long bytesOut;
+
+    /**
+     * @param command The program and its arguments
+     * @param stage The stage of work the program is run for, or null to use the program name
+     */
+    public ProcessMonitor(List<String> command, String stage) {
+        this.command = command;
+        program = new File(command.get(0)).getName();
+        this.stage = stage == null ? program : stage;
+        event.begin();
+    }
+
+    /**
+     * @return The name of the program, such as {@code ffmpeg}
+     */
+    public String getProgram() {
+        return program;
+    }
+
+    /**
+     * Sample the CPU time, peak memory and bytes read and written of the running process
+     * @param process The process being monitored
+     */
+    public void sample(Process process) {
+        Duration sampledCpuTime = process.info().totalCpuDuration().orElse(Duration.ZERO);
+        if (sampledCpuTime.compareTo(cpuTime) > 0) {
+            cpuTime = sampledCpuTime;
+        }
+        peakRss = Math.max(peakRss, readPeakRss(process.pid()));
+        readIo(process.pid());
+    }
+
+    /**
+     * Record the run once the process has exited
+     * @param exitValue The exit value of the process, or -1 if it was killed
+     * @return The stats of the run
+     */
+    public ProcessStats finish(int exitValue) {
+        Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+
+        String arguments = String.join(" ", command);
+        if (arguments.length() > MAX_ARGUMENTS_LENGTH) {
+            arguments = arguments.substring(0, MAX_ARGUMENTS_LENGTH - 3) + "...";
+        }
+        ProcessStats stats = new ProcessStats(program, stage, arguments, wallTime, cpuTime, peakRss, bytesIn, bytesOut,
+                exitValue);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.program = program;
+            event.stage = stage;
+            event.arguments = arguments;
+            event.exitValue = exitValue;
+            event.cpuTime = cpuTime.toMillis();
+            event.peakRss = peakRss;
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.commit();
+        }
+        ProcessMetrics.getInstance().record(stats);
+        return stats;
+    }
+
+    /**
+     * Read the peak resident memory of a running process from {@code /proc}
+     * @param pid The id of the process
+     * @return The peak resident memory in bytes, or 0 if it could not be read
+     */
+    private static long readPeakRss(long pid) {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/" + pid + "/status").toPath())) {
+                if (line.startsWith("VmHWM:")) { // The high water mark of resident memory, in kB
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) { // The process has exited, or this is not Linux
+        }
+        return 0;
+    }
+
+    /**
+     * Read the bytes a running process has read and written from {@code /proc}. The {@code rchar} and {@code wchar}
+     * counters are used rather than {@code read_bytes} and {@code write_bytes}, which only count storage and so miss
+     * pipes and files read from the page cache
+     * @param pid The id of the process
+     */
+    private void readIo(long pid) {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/" + pid + "/io").toPath())) {
+                if (line.startsWith("rchar:")) {
+                    bytesIn = Math.max(bytesIn, Long.parseLong(line.substring(6).trim()));
+                } else if (line.startsWith("wchar:")) {
+                    bytesOut = Math.max(bytesOut, Long.parseLong(line.substring(6).trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) { // The process has exited, or this is not Linux
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package main;
+
+import javafx.concurrent.Task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProcessPipeline is responsible for running a chain of commands where the standard output of each command is streamed
+ * into the standard input of the next through an OS pipe, like a shell pipe. The commands run concurrently, so each
+ * stage works on data as soon as the previous stage produces it, and no intermediate files are needed.
+ * @author Tait & Alex
+ */
+public class ProcessPipeline extends Task<Void> {
+    /**
+     * The number of most recent bytes kept of each command's error stream
+     */
+    private static final int ERROR_CAPACITY = 16 * 1024;
+    /**
+     * How often the resources used by the commands are sampled. Sampling starts at {@code FIRST_SAMPLE_MILLIS} and the
+     * interval doubles up to {@code SAMPLE_MILLIS}, as short commands exit long before the first full interval
+     */
+    private static final long FIRST_SAMPLE_MILLIS = 2;
+    private static final long SAMPLE_MILLIS = 100;
+
+    private final List<List<String>> commands = new ArrayList<>(); // The argument lists of each command
+    private final List<Process> processes = new ArrayList<>();
+    private double progressDuration; // The duration in seconds of the media the last command produces
+    private String stage; // The stage of work the pipeline is run for, or null to use the program names
+
+    /**
+     * Add a command to the end of the pipeline. The command is run directly, not through a shell
+     * @param command The program and its arguments
+     * @return {@code this}
+     */
+    public ProcessPipeline then(String... command) {
+        return then(Arrays.asList(command));
+    }
+
+    /**
+     * Add a command to the end of the pipeline. The command is run directly, not through a shell
+     * @param command The program and its arguments
+     * @return {@code this}
+     */
+    public ProcessPipeline then(List<String> command) {
+        commands.add(new ArrayList<>(command));
+        return this;
+    }
+
+    /**
+     * Report progress by parsing the standard output of the last command, an FFmpeg command run with
+     * {@code -progress pipe:1}
+     * @param progressDuration The duration in seconds of the media the last command produces
+     * @return {@code this}
+     */
+    public ProcessPipeline setProgressDuration(double progressDuration) {
+        this.progressDuration = progressDuration;
+        return this;
+    }
+
+    /**
+     * Name the stage of work the pipeline is run for. Each command's stats are recorded in {@link ProcessMetrics}
+     * under the stage followed by the program, such as {@code convertVideo/ffmpeg.2}
+     * @param stage The stage, such as {@code convertVideo}
+     * @return {@code this}
+     */
+    public ProcessPipeline setStage(String stage) {
+        this.stage = stage;
+        return this;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        if (isCancelled()) {
+            return null;
+        }
+        List<ProcessBuilder> builders = new ArrayList<>();
+        ProcessMonitor[] monitors = new ProcessMonitor[commands.size()];
+        for (int i = 0; i < commands.size(); i++) {
+            String program = new File(commands.get(i).get(0)).getName();
+            monitors[i] = new ProcessMonitor(commands.get(i),
+                    stage == null ? null : String.format("%s/%s.%d", stage, program, i + 1));
+            builders.add(new ProcessBuilder(commands.get(i)));
+        }
+
+        /* The commands are connected by OS pipes, so data flows between them without passing through the JVM. If a
+         * command cannot be started, the commands already started are killed by startPipeline() */
+        List<Process> started = ProcessBuilder.startPipeline(builders);
+        synchronized (processes) {
+            processes.addAll(started);
+        }
+        if (isCancelled()) { // Cancelled while the commands were starting, before cancelled() could see them
+            cancelled();
+            return null;
+        }
+        processes.get(0).getOutputStream().close();
+
+        // Each command's error stream is drained so a full pipe buffer cannot stall it
+        List<Thread> threads = new ArrayList<>();
+        RingBuffer[] errors = new RingBuffer[processes.size()];
+        for (int i = 0; i < processes.size(); i++) {
+            Process process = processes.get(i);
+            RingBuffer error = new RingBuffer(ERROR_CAPACITY);
+            errors[i] = error;
+            threads.add(ThreadPool.startThread("ProcessPipeline-stderr-" + i,
+                    () -> ProcessRunner.drain(process.getErrorStream(), error)));
+        }
+        Process last = processes.get(processes.size() - 1);
+        threads.add(ThreadPool.startThread("ProcessPipeline-stdout", () -> {
+            if (progressDuration > 0) {
+                ProcessRunner.readProgress(last.getInputStream(), progressDuration, this::updateProgress, null);
+            } else {
+                ProcessRunner.drain(last.getInputStream(), null);
+            }
+        }));
+
+        /* Wait for every command, sampling the resources of those still running, and record each as it exits. Once any
+         * command fails the others are killed, as the commands either side of it would otherwise wait on it forever */
+        int[] exitValues = new int[processes.size()];
+        boolean[] exited = new boolean[processes.size()];
+        int running = processes.size();
+        int failed = -1; // The first command that failed
+        long sampleMillis = FIRST_SAMPLE_MILLIS;
+        while (running > 0) {
+            for (int i = 0; i < processes.size(); i++) {
+                Process process = processes.get(i);
+                if (exited[i]) {
+                    continue;
+                } else if (process.isAlive()) {
+                    monitors[i].sample(process);
+                    continue;
+                }
+                exited[i] = true;
+                running--;
+                exitValues[i] = process.exitValue();
+                monitors[i].finish(isCancelled() ? -1 : exitValues[i]);
+                if (exitValues[i] != 0 && failed < 0) {
+                    failed = i;
+                    for (Process other : processes) {
+                        ProcessRunner.destroyTree(other);
+                    }
+                }
+            }
+            if (running > 0) {
+                Thread.sleep(sampleMillis);
+                sampleMillis = Math.min(sampleMillis * 2, SAMPLE_MILLIS);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failed >= 0) {
+            throw new Exception(String.format("Failed command (exit %d): %s\n%s", exitValues[failed],
+                    String.join(" ", commands.get(failed)), errors[failed].getLastLines(5)));
+        }
+        return null;
+    }
+
+    @Override
+    protected void cancelled() {
+        synchronized (processes) {
+            ProcessRunner.destroyTrees(new ArrayList<>(processes)); // Killing every command in the pipeline
+        }
+    }
+}
@@ -3,42 +3,253 @@ package main;
 import javafx.concurrent.Task;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 /**
- * ProcessRunner is responsible for running bash commands and reporting their exit value back to the rest of the program
+ * ProcessRunner is responsible for running external programs and reporting their exit value back to the rest of the
+ * program. Programs are run directly from their argument lists, without a shell. Their output is drained as they run so
+ * a full pipe never stalls them, keeping only the most recent output. The time, CPU, memory and files each run uses are
+ * recorded in {@link ProcessStats}, which are kept by {@link ProcessMetrics} and committed as a {@link ProcessEvent}
  * @author Tait & Alex
  */
 public class ProcessRunner extends Task<Void> {
+    /**
+     * The number of most recent bytes kept of each output stream
+     */
+    private static final int OUTPUT_CAPACITY = 64 * 1024;
+    /**
+     * How often the resources used by the process are sampled. Sampling starts at {@code FIRST_SAMPLE_MILLIS} and the
+     * interval doubles up to {@code SAMPLE_MILLIS}, as most processes exit long before the first full interval, and
+     * their resources can only be read while they run
+     */
+    private static final long FIRST_SAMPLE_MILLIS = 2;
+    private static final long SAMPLE_MILLIS = 100;
+    /**
+     * The number of error lines included when the process fails
+     */
+    private static final int ERROR_LINES = 5;
 
     private int exitValue;
-    private String _command; // The bash command
-    private Process process;
+    private final List<String> command; // The program and its arguments
+    private volatile Process process;
+    private double progressDuration; // The duration in seconds of the media an FFmpeg command produces
+    private long timeoutMillis; // How long the process may run before it is killed, or 0 for no limit
+    private String stage; // The stage of work the process is run for, or null to use the program name
+    private final RingBuffer output = new RingBuffer(OUTPUT_CAPACITY);
+    private final RingBuffer errors = new RingBuffer(OUTPUT_CAPACITY);
+    private volatile ProcessStats stats;
 
-    public ProcessRunner(String command){
-        _command=command;
+    /**
+     * @param command The program and its arguments
+     */
+    public ProcessRunner(String... command) {
+        this(Arrays.asList(command));
+    }
+
+    /**
+     * @param command The program and its arguments
+     */
+    public ProcessRunner(List<String> command) {
+        this.command = new ArrayList<>(command);
+    }
+
+    /**
+     * Report progress by parsing the standard output of an FFmpeg command run with {@code -progress pipe:1}
+     * @param progressDuration The duration in seconds of the media the command produces
+     * @return {@code this}
+     */
+    public ProcessRunner setProgressDuration(double progressDuration) {
+        this.progressDuration = progressDuration;
+        return this;
+    }
+
+    /**
+     * Kill the process and fail if it runs for longer than the timeout
+     * @param timeout The time the process may run for, or 0 for no limit
+     * @param unit The unit of the timeout
+     * @return {@code this}
+     */
+    public ProcessRunner setTimeout(long timeout, TimeUnit unit) {
+        timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Name the stage of work the process is run for, which its stats are grouped by in {@link ProcessMetrics}
+     * @param stage The stage, such as {@code convertVideo}
+     * @return {@code this}
+     */
+    public ProcessRunner setStage(String stage) {
+        this.stage = stage;
+        return this;
     }
 
     @Override
     protected Void call() throws Exception {
-        ProcessBuilder builder = new ProcessBuilder();
-        builder.command("bash","-c",_command);
-        process = builder.start();
-        exitValue = process.waitFor(); // Waiting for the process to finish executing
-        if (process.waitFor() != 0) { // Prints out the command & error stream if the bash command fails
-            BufferedReader errorStream = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-            String errorString = errorStream.readLine();
-            throw new Exception("Failed command: "+_command+"\n"+errorString);
+        long start = System.nanoTime();
+        ProcessMonitor monitor = new ProcessMonitor(command, stage);
+        Process process = new ProcessBuilder(command).start();
+        this.process = process;
+        if (isCancelled()) { // The task may have been cancelled while the process was starting
+            destroyTree(process);
+        }
+        process.getOutputStream().close(); // Nothing is written to the process
+
+        /* Drain both output streams so the process never blocks on a full pipe */
+        String program = monitor.getProgram();
+        Thread outputReader = ThreadPool.startThread(program + "-stdout", () -> {
+            if (progressDuration > 0) {
+                readProgress(process.getInputStream(), progressDuration, this::updateProgress, output);
+            } else {
+                drain(process.getInputStream(), output);
+            }
+        });
+        Thread errorReader = ThreadPool.startThread(program + "-stderr", () -> drain(process.getErrorStream(), errors));
+
+        /* Wait for the process, sampling its resources and enforcing the timeout */
+        boolean timedOut = false;
+        monitor.sample(process);
+        long sampleMillis = FIRST_SAMPLE_MILLIS;
+        while (!process.waitFor(sampleMillis, TimeUnit.MILLISECONDS)) {
+            monitor.sample(process);
+            sampleMillis = Math.min(sampleMillis * 2, SAMPLE_MILLIS);
+            if (timeoutMillis > 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                timedOut = true;
+                destroyTree(process);
+                process.waitFor();
+                break;
+            }
+        }
+        exitValue = process.exitValue();
+        outputReader.join();
+        errorReader.join();
+        stats = monitor.finish(timedOut || isCancelled() ? -1 : exitValue);
+
+        if (timedOut) {
+            throw new TimeoutException(String.format("Timed out after %dms: %s\n%s", timeoutMillis,
+                    String.join(" ", command), errors.getLastLines(ERROR_LINES)));
+        }
+        if (exitValue != 0) { // Reports the command & the end of its error stream if the command fails
+            throw new Exception(String.format("Failed command (exit %d): %s\n%s", exitValue,
+                    String.join(" ", command), errors.getLastLines(ERROR_LINES)));
         }
         return null;
     }
 
+    /**
+     * Reads FFmpeg {@code -progress} key=value lines from an output stream until it closes, reporting the output time
+     * against the duration of the media
+     * @param output The standard output of an FFmpeg command run with {@code -progress pipe:1}
+     * @param progressDuration The duration in seconds of the media the command produces
+     * @param updateProgress Receives the work done and total work, in seconds
+     * @param copy Receives a copy of the output, or null
+     */
+    static void readProgress(InputStream output, double progressDuration, BiConsumer<Double, Double> updateProgress,
+                             RingBuffer copy) {
+        BufferedReader outputStream = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = outputStream.readLine()) != null) {
+                if (copy != null) {
+                    byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                    copy.write(bytes, 0, bytes.length);
+                }
+                // FFmpeg reports out_time_ms in microseconds, newer versions also report it as out_time_us
+                if (line.startsWith("out_time_ms=") || line.startsWith("out_time_us=")) {
+                    try {
+                        double seconds = Long.parseLong(line.substring(line.indexOf('=') + 1).trim()) / 1e6;
+                        updateProgress.accept(Math.min(Math.max(seconds, 0), progressDuration), progressDuration);
+                    } catch (NumberFormatException ignored) { // The time is N/A until the first frame is written
+                    }
+                } else if (line.equals("progress=end")) {
+                    updateProgress.accept(progressDuration, progressDuration);
+                }
+            }
+        } catch (IOException ignored) { // The stream closes when the process is killed
+        }
+    }
+
+    /**
+     * Read a stream until it ends, keeping its most recent bytes
+     * @param in The stream to read
+     * @param buffer The buffer to keep the bytes in, or null to discard them
+     */
+    public static void drain(InputStream in, RingBuffer buffer) {
+        byte[] bytes = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                if (buffer != null) {
+                    buffer.write(bytes, 0, read);
+                }
+            }
+        } catch (IOException ignored) { // The stream closes when the process is killed
+        }
+    }
+
+    /**
+     * Kill a process and every process it started, children first so none are left running
+     * @param process The process to kill
+     */
+    static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Kill processes and every process they started on a separate thread, as tasks are cancelled on the FX thread and
+     * walking the process tree reads from {@code /proc}
+     * @param processes The processes to kill
+     */
+    static void destroyTrees(List<Process> processes) {
+        if (!processes.isEmpty()) {
+            ThreadPool.startThread("destroy", () -> processes.forEach(ProcessRunner::destroyTree));
+        }
+    }
+
     @Override
     protected void cancelled() {
-        process.destroyForcibly(); // Killing the process if we want to stop it
+        Process process = this.process;
+        if (process != null) {
+            destroyTrees(Collections.singletonList(process)); // Killing the process if we want to stop it
+        }
     }
 
     public int getExitValue() {
         return exitValue;
     }
+
+    /**
+     * Get the resources used by the process, once it has exited
+     * @return The stats of the process, or null if it has not exited
+     */
+    public ProcessStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Get the most recent standard output of the process
+     * @return The end of the standard output
+     */
+    public String getOutput() {
+        return output.toString();
+    }
+
+    /**
+     * Get the most recent standard error of the process
+     * @return The end of the standard error
+     */
+    public String getErrors() {
+        return errors.toString();
+    }
 }
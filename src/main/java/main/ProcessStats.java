@@ -0,0 +1,106 @@
+package main;
+
+import java.time.Duration;
+
+/**
+ * ProcessStats records the resources used by one run of an external program, by a {@link ProcessRunner} or a stage of
+ * a {@link ProcessPipeline}. CPU time, peak memory and the bytes read and written are sampled from {@code /proc} while
+ * the process runs, so they are unavailable (zero) on other systems and exclude the last moments before the process
+ * exits
+ * @author Tait & Alex
+ */
+public class ProcessStats {
+    private final String program;
+    private final String stage;
+    private final String arguments;
+    private final Duration wallTime;
+    private final Duration cpuTime;
+    private final long peakRss;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final int exitValue;
+
+    ProcessStats(String program, String stage, String arguments, Duration wallTime, Duration cpuTime, long peakRss,
+                 long bytesIn, long bytesOut, int exitValue) {
+        this.program = program;
+        this.stage = stage;
+        this.arguments = arguments;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.peakRss = peakRss;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.exitValue = exitValue;
+    }
+
+    /**
+     * @return The name of the program that was run, such as {@code ffmpeg}
+     */
+    public String getProgram() {
+        return program;
+    }
+
+    /**
+     * @return The stage of work the program was run for, such as {@code convertVideo}
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @return The command line of the program, shortened if it is long
+     */
+    public String getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return The time from starting the process until it exited
+     */
+    public Duration getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * @return The user and system CPU time used by the process
+     */
+    public Duration getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * @return The peak resident memory of the process in bytes
+     */
+    public long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * @return The bytes the process read, from files, pipes and sockets
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return The bytes the process wrote, to files, pipes and sockets
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return The exit value of the process, or -1 if it was killed before exiting
+     */
+    public int getExitValue() {
+        return exitValue;
+    }
+
+    /* Represent the stats in one line, such as "convertVideo (ffmpeg): 12.31s wall, 40.02s cpu, 212MB peak, exit 0" */
+    @Override
+    public String toString() {
+        return String.format("%s (%s): %.2fs wall, %.2fs cpu, %dMB peak, %dKB in, %dKB out, exit %d", stage, program,
+                wallTime.toMillis() / 1000.0, cpuTime.toMillis() / 1000.0, peakRss / (1024 * 1024), bytesIn / 1024,
+                bytesOut / 1024, exitValue);
+    }
+}
@@ -0,0 +1,79 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RingBuffer keeps the last bytes written to it, up to a fixed capacity, so the output of a process can be read
+ * continuously without holding all of it. Writes and reads may happen on different threads.
+ * @author Tait & Alex
+ */
+public class RingBuffer {
+    private final byte[] buffer;
+    private int start; // The index of the oldest byte
+    private int size; // The number of bytes held
+    private long total; // The number of bytes ever written
+
+    /**
+     * @param capacity The number of most recent bytes to keep
+     */
+    public RingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Append bytes, discarding the oldest bytes once the buffer is full
+     * @param bytes The bytes to append
+     * @param offset The index of the first byte to append
+     * @param length The number of bytes to append
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        total += length;
+        if (length >= buffer.length) { // Only the end of the bytes fits
+            System.arraycopy(bytes, offset + length - buffer.length, buffer, 0, buffer.length);
+            start = 0;
+            size = buffer.length;
+            return;
+        }
+        int end = (start + size) % buffer.length;
+        int first = Math.min(length, buffer.length - end);
+        System.arraycopy(bytes, offset, buffer, end, first);
+        System.arraycopy(bytes, offset + first, buffer, 0, length - first);
+        size += length;
+        if (size > buffer.length) {
+            start = (start + size - buffer.length) % buffer.length;
+            size = buffer.length;
+        }
+    }
+
+    /**
+     * Get the number of bytes ever written, including discarded bytes
+     * @return The number of bytes written
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the last lines held by the buffer
+     * @param lines The maximum number of lines
+     * @return The lines, joined by newlines
+     */
+    public String getLastLines(int lines) {
+        String text = toString().trim();
+        int index = text.length();
+        for (int i = 0; i < lines && index >= 0; i++) {
+            index = text.lastIndexOf('\n', index - 1);
+        }
+        return text.substring(Math.min(index + 1, text.length())); // Empty if nothing was written or no lines asked for
+    }
+
+    /* The held bytes decoded as UTF-8, oldest first */
+    @Override
+    public synchronized String toString() {
+        byte[] bytes = new byte[size];
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, bytes, 0, first);
+        System.arraycopy(buffer, 0, bytes, first, size - first);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
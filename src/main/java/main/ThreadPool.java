@@ -0,0 +1,261 @@
+package main;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This enum is responsible for the shared thread pools that background work is run on. Each pool has a bounded number
+ * of named daemon threads, which exit after being idle, and queues work beyond that bound. Pools report their queue
+ * depth and active threads, and are shut down together when the application closes.
+ * <p>
+ * Pools of blocking work, which spend their time waiting on processes or the network, may run each task on its own
+ * virtual thread instead. Waiting then does not hold a platform thread, so these pools allow many more tasks at once,
+ * limited by permits rather than threads. Virtual threads are used unless the {@code varpedia.virtualThreads} system
+ * property is {@code false}.
+ * @author Tait & Alex
+ */
+public enum ThreadPool {
+    /**
+     * Work that keeps a core busy, such as decoding and scaling images
+     */
+    CPU("cpu", Runtime.getRuntime().availableProcessors(), 0),
+    /**
+     * Threads that start an external process and wait for it to exit, such as FFmpeg and espeak. The processes use
+     * the cores, so this pool stays bounded near the number of cores with virtual threads
+     */
+    PROCESS("process", Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 4)),
+    /**
+     * Threads that wait on network requests, such as searches and image downloads
+     */
+    NETWORK("network", 8, 256),
+    /**
+     * Threads that wait on the file system, such as removing finished build folders
+     */
+    DISK("disk", 2, 0);
+
+    /**
+     * How long an idle thread is kept before it exits
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Whether pools that allow it run their tasks on virtual threads
+     */
+    private static volatile boolean virtualThreads =
+            Boolean.parseBoolean(System.getProperty("varpedia.virtualThreads", "true"));
+
+    private final String poolName;
+    private final ThreadPoolExecutor executor;
+    private final int maxVirtualTasks; // The number of tasks that may run at once on virtual threads, or 0 if not allowed
+    private final Semaphore virtualPermits;
+    private final AtomicInteger activeVirtualTasks = new AtomicInteger();
+    private final AtomicInteger completedVirtualTasks = new AtomicInteger();
+    private ExecutorService virtualExecutor;
+
+    ThreadPool(String name, int maxThreads, int maxVirtualTasks) {
+        poolName = name;
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true); // Pool threads never keep the application running
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        this.maxVirtualTasks = maxVirtualTasks;
+        virtualPermits = new Semaphore(Math.max(maxVirtualTasks, 1), true);
+    }
+
+    /**
+     * Run a task on this pool
+     * @param task The task to run, such as a {@link javafx.concurrent.Task}
+     * @return A future that completes when the task has run
+     */
+    public Future<?> submit(Runnable task) {
+        if (isVirtual()) {
+            return getVirtualExecutor().submit(() -> runVirtual(() -> {
+                task.run();
+                return null;
+            }));
+        }
+        return executor.submit(task);
+    }
+
+    /**
+     * Run a task that returns a value on this pool
+     * @param task The task to run
+     * @param <T> The type of the value
+     * @return A future of the value
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        if (isVirtual()) {
+            return getVirtualExecutor().submit(() -> runVirtual(task));
+        }
+        return executor.submit(task);
+    }
+
+    /**
+     * Get this pool as an {@link Executor}, for APIs that take one
+     * @return The executor of this pool
+     */
+    public Executor getExecutor() {
+        return this::submit;
+    }
+
+    /**
+     * Check whether this pool runs its tasks on virtual threads
+     * @return True if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtualThreads && maxVirtualTasks > 0;
+    }
+
+    /**
+     * Set whether pools of blocking work run their tasks on virtual threads. Tasks already submitted are unaffected
+     * @param virtualThreads True to run blocking work on virtual threads
+     */
+    public static void setVirtualThreads(boolean virtualThreads) {
+        ThreadPool.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Start a thread outside of the pools, for work that lives as long as something else, such as reading the output
+     * of a process. It is a virtual thread if virtual threads are enabled, otherwise a daemon platform thread
+     * @param name The name of the thread
+     * @param task The work of the thread
+     * @return The started thread
+     */
+    public static Thread startThread(String name, Runnable task) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(name).start(task);
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Run a task on the current virtual thread once a permit is free, so the pool's limit on running tasks holds
+     */
+    private <T> T runVirtual(Callable<T> task) throws Exception {
+        virtualPermits.acquire();
+        activeVirtualTasks.incrementAndGet();
+        try {
+            return task.call();
+        } finally {
+            activeVirtualTasks.decrementAndGet();
+            completedVirtualTasks.incrementAndGet();
+            virtualPermits.release();
+        }
+    }
+
+    /**
+     * Get the executor that starts a named virtual thread for each task, creating it when first used
+     */
+    private synchronized ExecutorService getVirtualExecutor() {
+        if (virtualExecutor == null) {
+            ThreadFactory factory = Thread.ofVirtual().name(poolName + "-virtual-", 1).factory();
+            virtualExecutor = Executors.newThreadPerTaskExecutor(factory);
+        }
+        return virtualExecutor;
+    }
+
+    /**
+     * Get the number of tasks waiting for a free thread or permit
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size() + virtualPermits.getQueueLength();
+    }
+
+    /**
+     * Get the number of tasks running
+     * @return The number of active tasks
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount() + activeVirtualTasks.get();
+    }
+
+    /**
+     * Get the number of platform threads in this pool, including idle threads
+     * @return The number of threads
+     */
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Get the maximum number of tasks that may run at once in the current mode
+     * @return The maximum number of running tasks
+     */
+    public int getMaxThreads() {
+        return isVirtual() ? maxVirtualTasks : executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Get the number of tasks this pool has finished
+     * @return The number of completed tasks
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount() + completedVirtualTasks.get();
+    }
+
+    /* Represent this pool by its metrics, such as "process: 3/16 active, 2 queued, 40 completed" */
+    @Override
+    public String toString() {
+        return String.format("%s%s: %d/%d active, %d queued, %d completed", poolName, isVirtual() ? " (virtual)" : "",
+                getActiveCount(), getMaxThreads(), getQueueDepth(), getCompletedCount());
+    }
+
+    /**
+     * Shut down every pool. Queued and running tasks are given until the timeout to finish, then interrupted
+     * @param timeout The time to wait for tasks to finish
+     * @param unit The unit of the timeout
+     */
+    public static void shutdownAll(long timeout, TimeUnit unit) {
+        for (ThreadPool pool : values()) {
+            pool.executor.shutdown(); // No new tasks are accepted
+            synchronized (pool) {
+                if (pool.virtualExecutor != null) {
+                    pool.virtualExecutor.shutdown();
+                }
+            }
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPool pool : values()) {
+            awaitTermination(pool.executor, deadline);
+            synchronized (pool) {
+                if (pool.virtualExecutor != null) {
+                    awaitTermination(pool.virtualExecutor, deadline);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for a shut down executor to finish its tasks until the deadline, then interrupt them
+     */
+    private static void awaitTermination(ExecutorService executor, long deadline) {
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -20,9 +20,10 @@ public abstract class FileManager<T> {
      */
     protected ObservableList<T> items;
     /**
-     * A map that is maintained alongside {@code items} that contains file-mappings of each item
+     * A map that is maintained alongside {@code items} that contains file-mappings of each item, keyed by
+     * {@code getKey()}
      */
-    protected Map<T, File> files;
+    protected Map<Object, File> files;
 
     /**
      * Default constructor instantiates items and files with synchronised Collections
@@ -46,7 +47,17 @@ public abstract class FileManager<T> {
      * @return The file for the given item
      */
     public File getFile(T item) {
-        return files.get(item);
+        return files.get(getKey(item));
+    }
+
+    /**
+     * Get the key of an item in {@code files}. Subclasses override this when the equals and hashCode of their items
+     * are unsuitable as map keys
+     * @param item The item
+     * @return The key of the item, which is the item itself by default
+     */
+    protected Object getKey(T item) {
+        return item;
     }
 
     /**
@@ -69,7 +80,7 @@ public abstract class FileManager<T> {
      * @param file
      */
     public void save(T item, File file) {
-        files.put(item, file);
+        files.put(getKey(item), file);
         items.add(item);
     }
 
@@ -80,7 +91,7 @@ public abstract class FileManager<T> {
     public void delete(T item) {
         recursiveDelete(getFile(item));
         items.remove(item);
-        files.remove(item);
+        files.remove(getKey(item));
     }
 
     /**
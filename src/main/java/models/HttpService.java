@@ -0,0 +1,358 @@
+package models;
+
+import constants.Folder;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HttpService is the one HTTP client every request to Wikipedia and Flickr is made through. Sharing a client shares its
+ * pool of keep-alive connections, so searches and image downloads reuse connections rather than paying for a new TLS
+ * handshake each time, and HTTP/2 servers multiplex concurrent requests over one connection. Requests run on the
+ * calling thread, such as a virtual thread of {@link main.ThreadPool#NETWORK}, waiting for a permit of their host so only
+ * so many run at once to each host, and every response is closed once read.
+ * <p>
+ * Search responses are cached on disk in {@link Folder#HTTP_CACHE}, so a topic searched before is answered without the
+ * network. Each {@link CachedEndpoint} is kept for its own time, replacing whatever caching the server asks for, and
+ * once that time has passed the response is revalidated with its ETag or Last-Modified date rather than fetched again
+ * if the server supports it. Image downloads are never cached, as Flickr's terms require images to be cleared.
+ * <p>
+ * The latency of each request, from sending it to receiving the response headers, is recorded by host and summarised
+ * alongside {@link main.ProcessMetrics}. The limit of requests to each host is set with the
+ * {@code varpedia.maxRequestsPerHost} system property, and the size of the cache in MB with
+ * {@code varpedia.httpCacheMB}.
+ * @author Tait & Alex
+ */
+public class HttpService {
+    /**
+     * The default number of requests that may run at once to each host
+     */
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 8;
+
+    /**
+     * The number of requests that may run at once to all hosts
+     */
+    private static final int MAX_REQUESTS = 64;
+
+    /**
+     * The number of idle connections kept open, and how long they are kept for
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    /**
+     * How long connecting, reading, and a whole request may take
+     */
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long READ_TIMEOUT_SECONDS = 20;
+    private static final long CALL_TIMEOUT_SECONDS = 60;
+
+    /**
+     * The default size of the response cache
+     */
+    private static final long DEFAULT_CACHE_MB = 32;
+
+    /**
+     * Requests whose responses are never stored, such as images
+     */
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    /**
+     * The number of most recent latencies kept for each host
+     */
+    private static final int REQUESTS_PER_HOST = 500;
+
+    private volatile static HttpService instance;
+
+    private final OkHttpClient client;
+    private final Semaphore requestPermits = new Semaphore(MAX_REQUESTS, true); // Limits requests to all hosts
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>(); // Limits requests to each host
+    private final int maxRequestsPerHost = Integer.getInteger("varpedia.maxRequestsPerHost",
+            DEFAULT_MAX_REQUESTS_PER_HOST);
+    private final Map<String, Deque<Long>> latencies = new TreeMap<>(); // Recent latencies of each host, in ms
+    private final Map<String, Integer> failures = new TreeMap<>(); // The number of failed requests to each host
+
+    /**
+     * The endpoints whose responses are cached, and for how long. The time of each can be changed with the system
+     * property {@code varpedia.httpCache.<name>Seconds}, such as {@code varpedia.httpCache.flickrSearchSeconds}
+     */
+    private enum CachedEndpoint {
+        WIKIPEDIA_SEARCH("wikipediaSearch", "en.wikipedia.org", "list=prefixsearch", TimeUnit.DAYS.toSeconds(1)),
+        WIKIPEDIA_EXTRACT("wikipediaExtract", "en.wikipedia.org", "prop=extracts", TimeUnit.DAYS.toSeconds(7)),
+        FLICKR_SEARCH("flickrSearch", "api.flickr.com", "method=flickr.photos.search", TimeUnit.DAYS.toSeconds(1));
+
+        private final String host;
+        private final String query;
+        private final long maxAgeSeconds;
+
+        CachedEndpoint(String name, String host, String query, long maxAgeSeconds) {
+            this.host = host;
+            this.query = query;
+            this.maxAgeSeconds = Long.getLong("varpedia.httpCache." + name + "Seconds", maxAgeSeconds);
+        }
+
+        /**
+         * Find the endpoint a request is to
+         * @param url The URL of the request
+         * @return The endpoint, or null if the URL's responses are not cached
+         */
+        private static CachedEndpoint find(HttpUrl url) {
+            String query = url.encodedQuery();
+            for (CachedEndpoint endpoint : values()) {
+                if (endpoint.host.equals(url.host()) && query != null && query.contains(endpoint.query)) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads the body of a response, such as by parsing its stream as it arrives
+     * @param <T> The type the body is read as
+     */
+    public interface BodyReader<T> {
+        T read(ResponseBody body) throws IOException;
+    }
+
+    /**
+     * Private constructor for singleton
+     */
+    private HttpService() {
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .cache(new Cache(Folder.HTTP_CACHE.get(),
+                        Long.getLong("varpedia.httpCacheMB", DEFAULT_CACHE_MB) * 1024 * 1024))
+                .addNetworkInterceptor(chain -> {
+                    long start = System.nanoTime();
+                    String host = chain.request().url().host();
+                    try {
+                        Response response = chain.proceed(chain.request());
+                        record(host, System.nanoTime() - start, response.code() < 400); // 304 revalidates
+                        return withMaxAge(response);
+                    } catch (IOException e) {
+                        record(host, System.nanoTime() - start, false);
+                        throw e;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Replace the caching a server asks for with the time its endpoint is cached for. Validators such as ETag are kept,
+     * so the cached response is revalidated once that time has passed
+     * @param response A response from the network, including a 304 that refreshes a cached response
+     * @return The response, cacheable if its endpoint is cached
+     */
+    static Response withMaxAge(Response response) {
+        CachedEndpoint endpoint = CachedEndpoint.find(response.request().url());
+        if (endpoint == null || response.code() >= 400) {
+            return response;
+        }
+        return response.newBuilder()
+                .header("Cache-Control", "public, max-age=" + endpoint.maxAgeSeconds)
+                .removeHeader("Pragma")
+                .removeHeader("Expires")
+                .build();
+    }
+
+    /**
+     * Get the singleton instance of HttpService
+     * @return The instance
+     */
+    public static HttpService getInstance() {
+        if (instance == null) {
+            synchronized (HttpService.class) {
+                if (instance == null) {
+                    instance = new HttpService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the shared client, for requests that need more than {@code getString()} and {@code getBytes()}
+     * @return The client
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Request a URL and read its body as text, waiting for the response
+     * @param url The URL to request
+     * @return The body of the response
+     * @throws IOException If the request failed or the response was not successful
+     */
+    public String getString(String url) throws IOException {
+        return execute(new Request.Builder().url(url).build(), ResponseBody::string);
+    }
+
+    /**
+     * Request a URL and read its body with a reader, such as a streaming parser, waiting for the reader to finish. The
+     * reader runs on the calling thread as the body arrives, and the response is closed once it returns
+     * @param url The URL to request
+     * @param reader Reads the body of the response
+     * @param <T> The type the body is read as
+     * @return The result of the reader
+     * @throws IOException If the request failed, the response was not successful, or the reader failed
+     */
+    public <T> T get(String url, BodyReader<T> reader) throws IOException {
+        return execute(new Request.Builder().url(url).build(), reader);
+    }
+
+    /**
+     * Read the content of a URL, such as an image, waiting for it. HTTP URLs are requested with the shared client but
+     * never cached, and other URLs, such as local files, are read directly
+     * @param url The URL to read
+     * @return The content of the URL
+     * @throws IOException If the URL could not be read
+     */
+    public byte[] getBytes(URL url) throws IOException {
+        String protocol = url.getProtocol();
+        if (!protocol.equals("http") && !protocol.equals("https")) {
+            try (InputStream in = url.openStream()) {
+                return in.readAllBytes();
+            }
+        }
+        return execute(new Request.Builder().url(url).cacheControl(NO_STORE).build(), ResponseBody::bytes);
+    }
+
+    /**
+     * Run a request on the calling thread once a permit for its host is free, and read its body. The response is always
+     * closed
+     */
+    private <T> T execute(Request request, BodyReader<T> reader) throws IOException {
+        Semaphore hostPermit = hostPermits.computeIfAbsent(request.url().host(),
+                host -> new Semaphore(maxRequestsPerHost, true));
+        try {
+            requestPermits.acquire();
+            try {
+                hostPermit.acquire();
+            } catch (InterruptedException e) {
+                requestPermits.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to request " + request.url());
+        }
+
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException(String.format("HTTP %d: %s", response.code(), request.url()));
+            }
+            return reader.read(response.body());
+        } finally {
+            hostPermit.release();
+            requestPermits.release();
+        }
+    }
+
+    /**
+     * Record the latency of a request to a host
+     */
+    private synchronized void record(String host, long latencyNanos, boolean succeeded) {
+        Deque<Long> hostLatencies = latencies.computeIfAbsent(host, key -> new ArrayDeque<>());
+        hostLatencies.addLast(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        if (hostLatencies.size() > REQUESTS_PER_HOST) {
+            hostLatencies.removeFirst();
+        }
+        if (!succeeded) {
+            failures.merge(host, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Summarise the latency of recent requests as a table with a row for each host
+     * @return The summary, or a message saying no requests have been made
+     */
+    public synchronized String getSummary() {
+        if (latencies.isEmpty()) {
+            return "No HTTP requests have been made\n";
+        }
+        StringBuilder summary = new StringBuilder(String.format("%-26s %6s %6s %9s %9s %9s%n",
+                "host", "reqs", "failed", "p50", "p95", "max"));
+        for (Map.Entry<String, Deque<Long>> entry : latencies.entrySet()) {
+            long[] values = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            summary.append(String.format("%-26s %6d %6d %8dms %8dms %8dms%n", entry.getKey(), values.length,
+                    failures.getOrDefault(entry.getKey(), 0), percentile(values, 50), percentile(values, 95),
+                    values[values.length - 1]));
+        }
+        summary.append(String.format("Connections: %d open, %d idle%n", client.connectionPool().connectionCount(),
+                client.connectionPool().idleConnectionCount()));
+        summary.append(getCacheSummary());
+        return summary.toString();
+    }
+
+    /**
+     * Summarise how often responses were served from the cache
+     */
+    private String getCacheSummary() {
+        Cache cache = client.cache();
+        if (cache == null) {
+            return "";
+        }
+        long size;
+        try {
+            size = cache.size();
+        } catch (IOException e) {
+            size = 0;
+        }
+        // A response revalidated with a 304 counts as both a hit and a network response
+        return String.format("Response cache: %d requests, %d hits, %d network responses, %.1fMB%n",
+                cache.requestCount(), cache.hitCount(), cache.networkCount(), size / (1024.0 * 1024));
+    }
+
+    /**
+     * Get a percentile of sorted values, by the nearest-rank method
+     */
+    private static long percentile(long[] sortedValues, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(rank - 1, 0)];
+    }
+
+    /**
+     * Close the idle connections and flush the cache, when the application closes
+     */
+    public void shutdown() {
+        client.connectionPool().evictAll();
+        try {
+            Cache cache = client.cache();
+            if (cache != null) {
+                cache.flush();
+            }
+        } catch (IOException ignored) { // Unwritten entries are fetched again next time
+        }
+    }
+
+    /* Represent the service by its summary */
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
@@ -1,8 +1,5 @@
 package models;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -11,7 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * WikipediaSearcher makes calls to the Wikipedia API
+ * WikipediaSearcher makes calls to the Wikipedia API through {@link HttpService}
  * @author Tait & Alex
  */
 public class WikipediaSearcher {
@@ -46,7 +43,6 @@ public class WikipediaSearcher {
         }
         int pageId = jsonArray.getJSONObject(0).getInt("pageid");
 
-        OkHttpClient client = new OkHttpClient();
         String url = "https://en.wikipedia.org/w/api.php?" +
                 "action=query" +
                 "&pageids=" + pageId +
@@ -54,10 +50,7 @@ public class WikipediaSearcher {
                 "&prop=extracts" +
                 "&exintro" +
                 "&explaintext";
-        Request request = new Request.Builder().url(url).build();
-
-        Response response = client.newCall(request).execute();
-        String result = response.body().string();
+        String result = HttpService.getInstance().getString(url);
         JSONObject jsonObject = new JSONObject(result);
 
         return jsonObject
@@ -74,14 +67,10 @@ public class WikipediaSearcher {
      * @throws IOException
      */
     private static JSONArray GetPagesJSON(String searchTerm) throws IOException {
-        OkHttpClient client = new OkHttpClient();
         String url = "https://en.wikipedia.org/w/api.php?action=query&list=prefixsearch&format=json" +
                 "&pssearch="+searchTerm.toLowerCase();
-        Request request = new Request.Builder().url(url).build();
-
-        Response response = client.newCall(request).execute();
 
-        String result = response.body().string();
+        String result = HttpService.getInstance().getString(url);
         JSONObject jsonObject = new JSONObject(result);
         return jsonObject.getJSONObject("query").getJSONArray("prefixsearch");
     }
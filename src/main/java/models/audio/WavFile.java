@@ -0,0 +1,336 @@
+package models.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WavFile reads the RIFF header of a PCM WAV file, such as those written by espeak, without decoding its audio. It
+ * provides the duration of the audio and can join the audio of several WAV files of the same format, optionally with set
+ * pauses between them.
+ * @author Tait & Alex
+ */
+public class WavFile {
+    /**
+     * The size of the canonical header written by {@code concatenate()}
+     */
+    private static final int HEADER_SIZE = 44;
+
+    /**
+     * The audio format code of uncompressed PCM
+     */
+    private static final int PCM = 1;
+
+    /**
+     * The largest 16-bit sample treated as silence when trimming, about -42dB
+     */
+    private static final int SILENCE_THRESHOLD = 256;
+
+    /**
+     * The quiet kept either side of the sound when trimming, so soft consonants are not cut off
+     */
+    private static final double SILENCE_MARGIN_SECONDS = 0.02;
+
+    /**
+     * The WAV file
+     */
+    private final File file;
+
+    /* Fields read from the fmt chunk */
+    private int audioFormat;
+    private int channels;
+    private int sampleRate;
+    private int byteRate;
+    private int blockAlign;
+    private int bitsPerSample;
+
+    /* Location of the data chunk */
+    private long dataOffset;
+    private long dataSize;
+
+    /**
+     * Reads the header of a WAV file
+     * @param file The WAV file to read
+     * @throws IOException If the file cannot be read or is not a WAV file
+     */
+    public WavFile(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            readHeader(channel);
+        }
+    }
+
+    /**
+     * Walks the RIFF chunks of the file until the data chunk is found
+     */
+    private void readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, 0);
+        if (buffer.getInt(0) != fourCC("RIFF") || buffer.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("Not a WAV file: " + file);
+        }
+
+        boolean foundFormat = false;
+        long position = 12;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + 8 <= channel.size()) {
+            chunkHeader.clear();
+            readFully(channel, chunkHeader, position);
+            int id = chunkHeader.getInt(0);
+            long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+            position += 8;
+
+            if (id == fourCC("fmt ")) {
+                ByteBuffer format = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, format, position);
+                audioFormat = format.getShort(0) & 0xFFFF;
+                channels = format.getShort(2) & 0xFFFF;
+                sampleRate = format.getInt(4);
+                byteRate = format.getInt(8);
+                blockAlign = format.getShort(12) & 0xFFFF;
+                bitsPerSample = format.getShort(14) & 0xFFFF;
+                foundFormat = true;
+            } else if (id == fourCC("data")) {
+                if (!foundFormat || byteRate == 0) {
+                    throw new IOException("WAV file has no format before its data: " + file);
+                }
+                dataOffset = position;
+                // Streamed WAVs use a placeholder size, so the data is limited to what is actually in the file
+                dataSize = Math.min(size, channel.size() - position);
+                dataSize -= dataSize % Math.max(blockAlign, 1);
+                return;
+            }
+            position += size + (size & 1); // Chunks are padded to an even size
+        }
+        throw new IOException("WAV file has no data: " + file);
+    }
+
+    /**
+     * Get the duration of the audio
+     * @return The duration in seconds
+     */
+    public double getDuration() {
+        return (double) dataSize / byteRate;
+    }
+
+    /**
+     * Check whether the audio of another WAV file can be joined to this one without conversion
+     * @param other The other WAV file
+     * @return True if both files have the same sample format
+     */
+    public boolean hasSameFormat(WavFile other) {
+        return audioFormat == other.audioFormat && channels == other.channels && sampleRate == other.sampleRate &&
+                bitsPerSample == other.bitsPerSample && blockAlign == other.blockAlign;
+    }
+
+    /**
+     * Join the audio of WAV files into one WAV file. The audio data is transferred between files without decoding.
+     * @param inputs The WAV files to join, which must share a sample format
+     * @param output The WAV file to write
+     * @return The total duration of the joined audio in seconds
+     * @throws IOException If an input cannot be read, the formats differ, or the output cannot be written
+     */
+    public static double concatenate(List<File> inputs, File output) throws IOException {
+        WavFile[] wavFiles = read(inputs);
+        long[] starts = new long[wavFiles.length];
+        long[] ends = new long[wavFiles.length];
+        for (int i = 0; i < wavFiles.length; i++) {
+            ends[i] = wavFiles[i].dataSize;
+        }
+        return write(wavFiles, starts, ends, new long[wavFiles.length], output);
+    }
+
+    /**
+     * Join pieces of speech into one WAV file with a set pause between each piece. The silence at the end of each piece
+     * and the start of the next is trimmed and replaced by the pause, so the pauses do not depend on the padding the
+     * synthesizer adds. Silence is only trimmed from 16-bit PCM audio, other formats are joined as they are.
+     * @param inputs The WAV files to join, which must share a sample format
+     * @param pauses The pause after each input but the last, in seconds
+     * @param output The WAV file to write
+     * @return The total duration of the joined audio in seconds
+     * @throws IOException If an input cannot be read, the formats differ, or the output cannot be written
+     */
+    public static double join(List<File> inputs, List<Double> pauses, File output) throws IOException {
+        WavFile[] wavFiles = read(inputs);
+        if (pauses.size() != wavFiles.length - 1) {
+            throw new IllegalArgumentException("Every join needs a pause");
+        }
+        long[] starts = new long[wavFiles.length];
+        long[] ends = new long[wavFiles.length];
+        long[] silences = new long[wavFiles.length];
+        for (int i = 0; i < wavFiles.length; i++) {
+            long[] sound = wavFiles[i].findSound();
+            starts[i] = i == 0 ? 0 : sound[0];
+            ends[i] = i == wavFiles.length - 1 ? wavFiles[i].dataSize : sound[1];
+            if (i < pauses.size()) {
+                silences[i] = Math.round(pauses.get(i) * wavFiles[i].sampleRate) * wavFiles[i].blockAlign;
+            }
+        }
+        return write(wavFiles, starts, ends, silences, output);
+    }
+
+    /**
+     * Read the headers of WAV files that are to be joined
+     */
+    private static WavFile[] read(List<File> inputs) throws IOException {
+        if (inputs.isEmpty()) {
+            throw new IOException("No WAV files to concatenate");
+        }
+        WavFile[] wavFiles = new WavFile[inputs.size()];
+        for (int i = 0; i < wavFiles.length; i++) {
+            wavFiles[i] = new WavFile(inputs.get(i));
+            if (!wavFiles[0].hasSameFormat(wavFiles[i])) {
+                throw new IOException("WAV formats differ: " + inputs.get(0) + ", " + inputs.get(i));
+            }
+        }
+        return wavFiles;
+    }
+
+    /**
+     * Write part of the audio data of each WAV file, each followed by silence, into one WAV file
+     * @param wavFiles The WAV files, which share a sample format
+     * @param starts The offset into each file's audio data to start from
+     * @param ends The offset into each file's audio data to end at
+     * @param silences The bytes of silence to write after each file's audio, a whole number of frames
+     * @param output The WAV file to write
+     * @return The total duration of the written audio in seconds
+     */
+    private static double write(WavFile[] wavFiles, long[] starts, long[] ends, long[] silences, File output)
+            throws IOException {
+        long dataSize = 0;
+        for (int i = 0; i < wavFiles.length; i++) {
+            dataSize += ends[i] - starts[i] + silences[i];
+        }
+
+        try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = wavFiles[0].createHeader(dataSize);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (int i = 0; i < wavFiles.length; i++) {
+                WavFile wavFile = wavFiles[i];
+                try (FileChannel in = FileChannel.open(wavFile.file.toPath(), StandardOpenOption.READ)) {
+                    long transferred = starts[i];
+                    while (transferred < ends[i]) {
+                        long count = in.transferTo(wavFile.dataOffset + transferred, ends[i] - transferred, out);
+                        if (count <= 0) {
+                            throw new IOException("Unexpected end of WAV data: " + wavFile.file);
+                        }
+                        transferred += count;
+                    }
+                }
+                if (silences[i] > 0) {
+                    // 8-bit PCM is unsigned, so its silence is the middle value rather than zero
+                    ByteBuffer silence = ByteBuffer.allocate((int) silences[i]);
+                    if (wavFile.bitsPerSample == 8) {
+                        Arrays.fill(silence.array(), (byte) 0x80);
+                    }
+                    while (silence.hasRemaining()) {
+                        out.write(silence);
+                    }
+                }
+            }
+        }
+        return (double) dataSize / wavFiles[0].byteRate;
+    }
+
+    /**
+     * Find where the sound of 16-bit PCM audio starts and ends, keeping a short margin of the quiet around it
+     * @return The offsets into the audio data of the start and end of the sound, or of the whole data if the audio is
+     * not 16-bit PCM or is silent throughout
+     */
+    private long[] findSound() throws IOException {
+        long[] whole = {0, dataSize};
+        if (audioFormat != PCM || bitsPerSample != 16 || dataSize > Integer.MAX_VALUE) {
+            return whole;
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            readFully(channel, data, dataOffset);
+        }
+
+        int frames = (int) (dataSize / blockAlign);
+        int first = -1;
+        int last = -1;
+        for (int frame = 0; frame < frames; frame++) {
+            for (int channel = 0; channel < channels; channel++) {
+                if (Math.abs(data.getShort(frame * blockAlign + channel * 2)) > SILENCE_THRESHOLD) {
+                    if (first < 0) {
+                        first = frame;
+                    }
+                    last = frame;
+                    break;
+                }
+            }
+        }
+        if (first < 0) {
+            return whole;
+        }
+        int margin = (int) (sampleRate * SILENCE_MARGIN_SECONDS);
+        return new long[]{(long) Math.max(first - margin, 0) * blockAlign,
+                (long) Math.min(last + 1 + margin, frames) * blockAlign};
+    }
+
+    /**
+     * Create a canonical 44 byte header for audio of this file's format
+     * @param dataSize The size of the audio data in bytes
+     * @return The header, ready to be written
+     */
+    private ByteBuffer createHeader(long dataSize) throws IOException {
+        if (dataSize + HEADER_SIZE - 8 > 0xFFFFFFFFL) {
+            throw new IOException("WAV data too large: " + dataSize + " bytes");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(fourCC("RIFF")).putInt((int) (dataSize + HEADER_SIZE - 8)).putInt(fourCC("WAVE"));
+        header.putInt(fourCC("fmt ")).putInt(16)
+                .putShort((short) audioFormat).putShort((short) channels)
+                .putInt(sampleRate).putInt(byteRate)
+                .putShort((short) blockAlign).putShort((short) bitsPerSample);
+        header.putInt(fourCC("data")).putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Read from a channel at the given position until the buffer is full
+     */
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of WAV header: " + file);
+            }
+        }
+    }
+
+    /**
+     * Get the little-endian integer value of a RIFF four character code
+     */
+    private static int fourCC(String code) {
+        return (code.charAt(0)) | (code.charAt(1) << 8) | (code.charAt(2) << 16) | (code.charAt(3) << 24);
+    }
+
+    /* Getters */
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public long getDataSize() {
+        return dataSize;
+    }
+}
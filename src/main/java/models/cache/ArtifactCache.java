@@ -0,0 +1,386 @@
+package models.cache;
+
+import constants.Folder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ArtifactCache is a content-addressed, size-bounded cache of files produced by the creation pipeline. Artifacts are
+ * stored on disk under their key, which is a hash of the inputs and parameters that produced them, so identical work
+ * is never repeated across builds, creations or sessions. The least recently used artifacts are evicted once the cache
+ * exceeds its maximum size. The order the artifacts were used in is kept in an index file beside them, rather than in
+ * their modification times, and artifacts are copied in and out of the cache rather than linked, so the files of a
+ * creation never share storage with the cache.
+ * @author Tait & Alex
+ */
+public class ArtifactCache {
+    /**
+     * The default maximum size of the cache in bytes
+     */
+    private static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    /**
+     * The file in the cache folder listing the keys of the artifacts, least recently used first
+     */
+    private static final String INDEX_FILE = "index";
+
+    /**
+     * The extension of files being written, which are moved into place once complete
+     */
+    private static final String PARTIAL_EXTENSION = ".part";
+
+    /**
+     * The singleton instance used by the creation pipeline
+     */
+    private static ArtifactCache instance;
+
+    /**
+     * The folder artifacts are stored in
+     */
+    private final File folder;
+
+    /**
+     * The cached artifacts by key, in least recently used order
+     */
+    private final LinkedHashMap<String, File> artifacts = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Memoized content digests of input files, keyed by their path, length and modification time
+     */
+    private final Map<String, String> fileDigests = new HashMap<>();
+
+    /**
+     * The maximum size of the cache in bytes
+     */
+    private long maxSize;
+
+    /**
+     * The total size of the cached artifacts in bytes
+     */
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs an ArtifactCache in the given folder, loading the artifacts already stored there
+     * @param folder The folder to store artifacts in
+     * @param maxSize The maximum size of the cache in bytes
+     */
+    public ArtifactCache(File folder, long maxSize) {
+        this.folder = folder;
+        this.maxSize = maxSize;
+        folder.mkdirs();
+
+        /* Load stored artifacts in the order of the index. Artifacts missing from the index, such as those stored
+         * before it was written, are treated as the least recently used, oldest first */
+        Map<String, File> stored = new LinkedHashMap<>();
+        File[] files = folder.listFiles(file -> file.isFile() && !file.getName().startsWith(INDEX_FILE)
+                && !file.getName().endsWith(PARTIAL_EXTENSION));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                stored.put(keyOf(file), file);
+            }
+        }
+        Map<String, File> indexed = new LinkedHashMap<>();
+        for (String key : readIndex()) {
+            File file = stored.remove(key);
+            if (file != null) {
+                indexed.put(key, file);
+            }
+        }
+        artifacts.putAll(stored);
+        artifacts.putAll(indexed);
+        for (File file : artifacts.values()) {
+            size += file.length();
+        }
+        evict();
+        writeIndex();
+    }
+
+    /**
+     * Get the singleton instance used by the creation pipeline, stored in {@link Folder#ARTIFACT_CACHE}
+     * @return The singleton instance
+     */
+    public static ArtifactCache getInstance() {
+        if (instance == null) {
+            synchronized (ArtifactCache.class) {
+                if (instance == null) {
+                    instance = new ArtifactCache(Folder.ARTIFACT_CACHE.get(), DEFAULT_MAX_SIZE);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Start building a key for an artifact produced by the given stage
+     * @param stage The name of the stage producing the artifact
+     * @return A {@link KeyBuilder} for the artifact
+     */
+    public KeyBuilder key(String stage) {
+        return new KeyBuilder().add(stage);
+    }
+
+    /**
+     * Get a cached artifact, marking it as recently used
+     * @param key The key of the artifact
+     * @return The cached artifact, or null if it is not cached
+     */
+    public synchronized File get(String key) {
+        if (key == null) {
+            return null;
+        }
+        File artifact = artifacts.get(key);
+        if (artifact != null && !artifact.exists()) { // Removed from disk outside of the cache
+            artifacts.remove(key);
+            artifact = null;
+        }
+        if (artifact == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        writeIndex(); // The artifact is now the most recently used
+        return artifact;
+    }
+
+    /**
+     * Restore a copy of a cached artifact to the given file, which may be changed without affecting the cache
+     * @param key The key of the artifact
+     * @param target The file to restore the artifact to
+     * @return True if the artifact was cached and has been restored
+     */
+    public boolean restore(String key, File target) {
+        File artifact = get(key);
+        if (artifact == null) {
+            return false;
+        }
+        try {
+            Files.copy(artifact.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Store a copy of a file as the artifact for the given key
+     * @param key The key of the artifact
+     * @param source The file to store
+     */
+    public synchronized void put(String key, File source) {
+        if (key == null || artifacts.containsKey(key) || !source.exists()) {
+            return;
+        }
+        String name = source.getName();
+        int extension = name.lastIndexOf('.');
+        File artifact = new File(folder, extension < 0 ? key : key + name.substring(extension));
+        File partial = new File(folder, artifact.getName() + PARTIAL_EXTENSION); // Not loaded if left behind
+        try {
+            Files.copy(source.toPath(), partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial.toPath(), artifact.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            partial.delete();
+            return;
+        }
+        artifacts.put(key, artifact);
+        size += artifact.length();
+        evict();
+        writeIndex();
+    }
+
+    /**
+     * Remove every artifact from the cache
+     */
+    public synchronized void clear() {
+        for (File artifact : artifacts.values()) {
+            artifact.delete();
+        }
+        artifacts.clear();
+        size = 0;
+        writeIndex();
+    }
+
+    /**
+     * Remove least recently used artifacts until the cache is no larger than its maximum size
+     */
+    private synchronized void evict() {
+        Iterator<File> iterator = artifacts.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            File artifact = iterator.next();
+            size -= artifact.length();
+            artifact.delete();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Read the keys of the index, least recently used first
+     * @return The keys, or none if there is no index
+     */
+    private List<String> readIndex() {
+        try {
+            return Files.readAllLines(new File(folder, INDEX_FILE).toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Write the keys of the artifacts to the index in the order they were used, replacing the index at once so it is
+     * never read half written
+     */
+    private synchronized void writeIndex() {
+        File index = new File(folder, INDEX_FILE);
+        File partial = new File(folder, INDEX_FILE + PARTIAL_EXTENSION);
+        try {
+            Files.write(partial.toPath(), artifacts.keySet(), StandardCharsets.UTF_8);
+            Files.move(partial.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) { // The order of use is lost, so the artifacts are evicted oldest first instead
+        }
+    }
+
+    /**
+     * Get the key of a stored artifact, its file name without the extension
+     */
+    private static String keyOf(File file) {
+        String name = file.getName();
+        int extension = name.indexOf('.');
+        return extension < 0 ? name : name.substring(0, extension);
+    }
+
+    /**
+     * Get the content digest of a file, reusing the digest while its length and modification time are unchanged
+     * @param file The file to digest
+     * @return The hexadecimal digest of the file's content
+     */
+    private String digest(File file) throws IOException {
+        String fileKey = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+        synchronized (fileDigests) {
+            String digest = fileDigests.get(fileKey);
+            if (digest != null) {
+                return digest;
+            }
+        }
+        MessageDigest messageDigest = newDigest();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        String digest = toHex(messageDigest.digest());
+        synchronized (fileDigests) {
+            fileDigests.put(fileKey, digest);
+        }
+        return digest;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) { // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /* Getters and setters */
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return artifacts.size();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+        writeIndex();
+    }
+
+    /* Represent this cache by its statistics, such as "12 artifacts, 3.2/512.0MB, 40 hits, 12 misses" */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d artifacts, %.1f/%.1fMB, %d hits, %d misses", artifacts.size(),
+                size / (1024.0 * 1024), maxSize / (1024.0 * 1024), hits.get(), misses.get());
+    }
+
+    /**
+     * KeyBuilder builds the key of an artifact from the inputs and parameters that produce it. Files are included by
+     * their content, so a key does not depend on where its inputs are stored.
+     */
+    public class KeyBuilder {
+        private final MessageDigest messageDigest = newDigest();
+        private boolean failed;
+
+        private KeyBuilder() {}
+
+        /**
+         * Add a parameter to the key
+         * @param parameter The parameter, or null
+         * @return {@code this}
+         */
+        public KeyBuilder add(Object parameter) {
+            messageDigest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            return this;
+        }
+
+        /**
+         * Add the content of an input file to the key
+         * @param file The input file
+         * @return {@code this}
+         */
+        public KeyBuilder add(File file) {
+            try {
+                return add((Object) digest(file));
+            } catch (IOException e) {
+                failed = true;
+                return this;
+            }
+        }
+
+        /**
+         * Build the key
+         * @return The key, or null if an input file could not be read
+         */
+        public String build() {
+            return failed ? null : toHex(messageDigest.digest());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package models.cache;
+
+import constants.Folder;
+import models.voice_synthesizer.VoiceSynthesizer;
+
+import java.io.File;
+import java.text.Normalizer;
+
+/**
+ * SpeechCache is a persistent cache of synthesized speech, so text that has been spoken by a voice before is never
+ * synthesized again, across edits, identical snippets and sessions. Speech is keyed by the synthesizer's
+ * {@link VoiceSynthesizer#getCacheKey() settings} and the normalised text, and stored in an {@link ArtifactCache} of its
+ * own, which hands out copies and evicts the least recently used speech beyond its size cap.
+ * @author Tait & Alex
+ */
+public class SpeechCache {
+    /**
+     * The maximum size of the speech cache in bytes
+     */
+    private static final long MAX_SIZE = 128L * 1024 * 1024;
+
+    private volatile static SpeechCache instance;
+
+    private final ArtifactCache cache;
+
+    /**
+     * Private constructor for singleton
+     */
+    private SpeechCache() {
+        this(new ArtifactCache(Folder.SPEECH_CACHE.get(), MAX_SIZE));
+    }
+
+    /**
+     * Package-private constructor used by tests, which keep speech in a cache of their own
+     * @param cache The cache to keep the speech in
+     */
+    SpeechCache(ArtifactCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the singleton instance of SpeechCache
+     * @return The instance
+     */
+    public static SpeechCache getInstance() {
+        if (instance == null) {
+            synchronized (SpeechCache.class) {
+                if (instance == null) {
+                    instance = new SpeechCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Restore cached speech to a file
+     * @param synthesizer The synthesizer that would speak the text
+     * @param text The text to be spoken
+     * @param target The file to restore the speech to
+     * @return True if the speech was cached and has been restored
+     */
+    public boolean restore(VoiceSynthesizer synthesizer, String text, File target) {
+        return cache.restore(key(synthesizer, text), target);
+    }
+
+    /**
+     * Store a copy of synthesized speech
+     * @param synthesizer The synthesizer that spoke the text
+     * @param text The text that was spoken
+     * @param audioFile The synthesized speech
+     */
+    public void put(VoiceSynthesizer synthesizer, String text, File audioFile) {
+        cache.put(key(synthesizer, text), audioFile);
+    }
+
+    /**
+     * Remove all cached speech
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Build the key of some speech from the synthesizer's settings and the normalised text
+     */
+    private String key(VoiceSynthesizer synthesizer, String text) {
+        return cache.key("speech").add(synthesizer.getClass().getName()).add(synthesizer.getCacheKey())
+                .add(normalise(text)).build();
+    }
+
+    /**
+     * Normalise text so that spellings which are spoken the same share their speech. Unicode is normalised, and runs of
+     * whitespace, including line breaks, become single spaces
+     * @param text The text to normalise
+     * @return The normalised text
+     */
+    static String normalise(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).replaceAll("\\s+", " ").trim();
+    }
+
+    /* Getters */
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    public int getCount() {
+        return cache.getCount();
+    }
+
+    /* Represent the speech cache by its statistics */
+    @Override
+    public String toString() {
+        return "Speech cache: " + cache;
+    }
+}
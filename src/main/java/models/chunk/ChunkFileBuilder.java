@@ -2,9 +2,14 @@ package models.chunk;
 
 import models.CallbackFileBuilder;
 import models.FileManager;
+import models.cache.SpeechCache;
 import models.voice_synthesizer.VoiceSynthesizer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implements a {@link CallbackFileBuilder} for {@link Chunk} objects
@@ -26,6 +31,21 @@ public class ChunkFileBuilder implements CallbackFileBuilder<Chunk> {
      */
     private VoiceSynthesizer voiceSynthesizer;
 
+    /**
+     * Existing audio of this chunk to copy instead of synthesizing the text, or null to synthesize
+     */
+    private File audioSource;
+
+    /**
+     * The chunk created by {@code build()}
+     */
+    private Chunk chunk;
+
+    /**
+     * A future of the chunk's audio file, which completes once the audio has been written
+     */
+    private CompletableFuture<File> audio;
+
     /**
      * Package-private default constructor used by {@link ChunkFileManager}
      */
@@ -70,13 +90,95 @@ public class ChunkFileBuilder implements CallbackFileBuilder<Chunk> {
         return this;
     }
 
-    /* Build the chunk */
+    /**
+     * Set existing audio for the chunk to be built, such as the stored audio of a chunk being edited. The audio must have
+     * been synthesized from the same text and {@link VoiceSynthesizer}
+     * @param audioSource The existing audio, or null to synthesize the text
+     * @return {@code this}
+     */
+    public ChunkFileBuilder setAudioSource(File audioSource) {
+        this.audioSource = audioSource;
+        return this;
+    }
+
+    /* Build the chunk. The chunk is saved straight away, while its audio may still be being synthesized */
     @Override
     public void build(FileManager<Chunk> caller) {
-        // Create audio file using Synthesizer's Process
-        File audioFile = voiceSynthesizer.save(text, chunkFolder);
+        if (audio == null && !restoreAudio()) {
+            // Create audio file using Synthesizer's Process, a piece of a long text at a time
+            setSynthesizedAudio(ChunkSentences.save(voiceSynthesizer, text, chunkFolder));
+        }
 
-        // If all good:
-        caller.save(new Chunk(text, voiceSynthesizer), audioFile);
+        chunk = new Chunk(text, voiceSynthesizer);
+        caller.save(chunk, new File(chunkFolder, "audio.wav"));
+    }
+
+    /**
+     * Reuse existing audio for the chunk, from the audio source or speech synthesized before. Package-private, used by
+     * {@link ChunkFileManager} to find the chunks that need synthesizing
+     * @return True if the chunk's audio has been restored
+     */
+    boolean restoreAudio() {
+        File audioFile = new File(chunkFolder, "audio.wav");
+        if (audioSource != null && audioSource.exists()) {
+            try {
+                Files.copy(audioSource.toPath(), audioFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                audio = CompletableFuture.completedFuture(audioFile);
+                return true;
+            } catch (IOException ignored) {
+            }
+        }
+        if (SpeechCache.getInstance().restore(voiceSynthesizer, text, audioFile)) {
+            audio = CompletableFuture.completedFuture(audioFile);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set the audio being synthesized for the chunk, which is cached for the next time the text is spoken once it is
+     * saved. Package-private, used by {@link ChunkFileManager} to synthesize chunks together
+     * @param synthesized The future of the audio file being synthesized into the chunk's folder
+     */
+    void setSynthesizedAudio(CompletableFuture<File> synthesized) {
+        VoiceSynthesizer synthesizer = voiceSynthesizer;
+        String spokenText = text;
+        audio = synthesized.thenApply(file -> {
+            SpeechCache.getInstance().put(synthesizer, spokenText, file);
+            return file;
+        });
+    }
+
+    /**
+     * Get the folder the chunk is built in. Package-private, used by {@link ChunkFileManager}
+     * @return The folder of the chunk
+     */
+    File getChunkFolder() {
+        return chunkFolder;
+    }
+
+    /**
+     * Get the synthesizer of the chunk. Package-private, used by {@link ChunkFileManager}
+     * @return The synthesizer of the chunk
+     */
+    VoiceSynthesizer getVoiceSynthesizer() {
+        return voiceSynthesizer;
+    }
+
+    /**
+     * Get the chunk created by {@code build()}. Package-private, used by {@link ChunkFileManager}
+     * @return The created chunk, or null if the chunk has not been built
+     */
+    Chunk getChunk() {
+        return chunk;
+    }
+
+    /**
+     * Get the future of the audio of the chunk created by {@code build()}. Package-private, used by
+     * {@link ChunkFileManager} to track when the chunk is ready
+     * @return The future of the audio file, or null if the chunk has not been built
+     */
+    CompletableFuture<File> getAudio() {
+        return audio;
     }
 }
@@ -1,9 +1,25 @@
 package models.chunk;
 
 import constants.Folder;
+import main.ThreadPool;
+import models.CallbackFileBuilder;
 import models.FileManager;
+import models.voice_synthesizer.VoiceSynthesizer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * CreationFileManager is a singleton {@link FileManager} for {@link Creation} items. It ensures that {@link Creation}'s
@@ -13,20 +29,42 @@ import java.io.File;
 
 /**
  * ChunkFileManager is a singleton {@link FileManager} for {@link Chunk} items. It ensures that the items it contains
- * exist with temporary audio files.
+ * exist with temporary audio files. A chunk is added as soon as it is created, while its audio is synthesized in the
+ * background, so ChunkFileManager tracks whether each chunk's audio is ready. Audio must only be read once it is ready,
+ * through {@link #whenReady(Chunk)} or {@link #whenAllReady(List)}.
  * @author Tait & Alex
  */
 public class ChunkFileManager extends FileManager<Chunk> {
+    /**
+     * Whether the audio of a chunk can be read
+     */
+    public enum AudioState {
+        SYNTHESIZING,
+        READY,
+        FAILED
+    }
+
     /**
      * The singleton instance
      */
     private static ChunkFileManager instance;
 
     /**
-     * The id to be given to the next Chunk
+     * The id to be given to the next Chunk. Ids are not reused, so a folder still being written after a reset is never
+     * given to a new chunk
      */
     private int nextId;
 
+    /**
+     * A future of the audio of each chunk, which completes once the audio has been written
+     */
+    private final Map<Chunk, CompletableFuture<File>> audio = Collections.synchronizedMap(new HashMap<>());
+
+    /**
+     * Work that is still reading chunk audio, which delays deleting the audio until it finishes
+     */
+    private final Set<CompletableFuture<?>> readers = Collections.synchronizedSet(new HashSet<>());
+
     /**
      * Private constructor for singleton
      */
@@ -58,21 +96,201 @@ public class ChunkFileManager extends FileManager<Chunk> {
     }
 
     /**
-     * Reset ChunkFileManager
+     * Reset ChunkFileManager. The chunk folders are deleted once any audio still being synthesized or read has finished
      */
     public void reset() {
-        nextId = 0;
+        List<File> folders = new ArrayList<>();
+        synchronized (files) {
+            for (File file : files.values()) {
+                folders.add(file.getParentFile());
+            }
+        }
+        List<CompletableFuture<?>> pending = new ArrayList<>(audio.values());
+        pending.addAll(readers);
+
         files.clear();
         items.clear();
+        audio.clear();
 
-        File chunksFolder = Folder.TEMP_CHUNKS.get();
-        recursiveDelete(chunksFolder);
-        chunksFolder.mkdirs();
+        whenSettled(pending).thenRunAsync(() -> {
+            for (File folder : folders) {
+                recursiveDelete(folder);
+            }
+        }, ThreadPool.DISK.getExecutor());
+    }
+
+    /* Create a chunk, tracking its audio until it is ready */
+    @Override
+    public void create(CallbackFileBuilder<Chunk> builder) {
+        super.create(builder);
+        if (builder instanceof ChunkFileBuilder) {
+            ChunkFileBuilder chunkBuilder = (ChunkFileBuilder) builder;
+            if (chunkBuilder.getChunk() != null && chunkBuilder.getAudio() != null) {
+                audio.put(chunkBuilder.getChunk(), chunkBuilder.getAudio());
+            }
+        }
+    }
+
+    /* Remove a chunk, deleting its folder once its audio is no longer being written or read */
+    @Override
+    public void delete(Chunk chunk) {
+        File file = getFile(chunk);
+        List<CompletableFuture<?>> pending = new ArrayList<>(readers);
+        CompletableFuture<File> chunkAudio = audio.remove(chunk);
+        if (chunkAudio != null) {
+            pending.add(chunkAudio);
+        }
+        items.remove(chunk);
+        files.remove(chunk);
+
+        if (file != null) {
+            whenSettled(pending).thenRunAsync(() -> recursiveDelete(file.getParentFile()),
+                    ThreadPool.DISK.getExecutor());
+        }
+    }
+
+    /**
+     * Create several chunks at once. Chunks whose audio cannot be reused are synthesized together through
+     * {@link VoiceSynthesizer#saveAll(List, List)}, one batch per synthesizer, rather than one at a time
+     * @param builders The builders of the chunks, from {@link #getBuilder()}
+     * @return The created chunks, in the same order as the builders. Their audio may still be being synthesized
+     */
+    public List<Chunk> createAll(List<ChunkFileBuilder> builders) {
+        Map<VoiceSynthesizer, List<ChunkFileBuilder>> batches = new LinkedHashMap<>();
+        for (ChunkFileBuilder builder : builders) {
+            if (!builder.restoreAudio()) {
+                batches.computeIfAbsent(builder.getVoiceSynthesizer(), synthesizer -> new ArrayList<>()).add(builder);
+            }
+        }
+        for (Map.Entry<VoiceSynthesizer, List<ChunkFileBuilder>> batch : batches.entrySet()) {
+            // Long chunks are synthesized a piece at a time, so every piece of the batch is synthesized together
+            List<ChunkSentences> chunkSentences = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            List<File> folders = new ArrayList<>();
+            for (ChunkFileBuilder builder : batch.getValue()) {
+                ChunkSentences sentences = new ChunkSentences(builder.getText());
+                chunkSentences.add(sentences);
+                if (sentences.isSplit()) {
+                    texts.addAll(sentences.getPieces());
+                    folders.addAll(sentences.createFolders(builder.getChunkFolder()));
+                } else {
+                    texts.add(builder.getText());
+                    folders.add(builder.getChunkFolder());
+                }
+            }
+            List<CompletableFuture<File>> audioFiles = batch.getKey().saveAll(texts, folders);
+            int next = 0;
+            for (int i = 0; i < chunkSentences.size(); i++) {
+                ChunkFileBuilder builder = batch.getValue().get(i);
+                ChunkSentences sentences = chunkSentences.get(i);
+                if (sentences.isSplit()) {
+                    int pieces = sentences.getPieces().size();
+                    builder.setSynthesizedAudio(sentences.join(audioFiles.subList(next, next + pieces),
+                            builder.getChunkFolder()));
+                    next += pieces;
+                } else {
+                    builder.setSynthesizedAudio(audioFiles.get(next++));
+                }
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (ChunkFileBuilder builder : builders) {
+            create(builder);
+            chunks.add(builder.getChunk());
+        }
+        return chunks;
+    }
+
+    /**
+     * Get a future of the audio of a chunk, which completes once the audio has been written
+     * @param chunk The chunk
+     * @return The future of the chunk's audio file, which completes exceptionally if the audio could not be synthesized
+     */
+    public CompletableFuture<File> whenReady(Chunk chunk) {
+        CompletableFuture<File> chunkAudio = audio.get(chunk);
+        if (chunkAudio != null) {
+            return chunkAudio;
+        }
+        File file = getFile(chunk);
+        if (file == null) {
+            CompletableFuture<File> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("Not a chunk of ChunkFileManager: " + chunk));
+            return failed;
+        }
+        return CompletableFuture.completedFuture(file);
+    }
+
+    /**
+     * Get a future of the audio of several chunks, which completes once all of their audio has been written
+     * @param chunks The chunks
+     * @return The future of the audio files, in the same order as the chunks, which completes exceptionally if any
+     * audio could not be synthesized
+     */
+    public CompletableFuture<List<File>> whenAllReady(List<Chunk> chunks) {
+        List<CompletableFuture<File>> futures = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            futures.add(whenReady(chunk));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<File> audioFiles = new ArrayList<>();
+            for (CompletableFuture<File> future : futures) {
+                audioFiles.add(future.join());
+            }
+            return audioFiles;
+        });
+    }
+
+    /**
+     * Copy the audio of several chunks into a folder once all of it is ready, named by each chunk's index such as
+     * {@code 0.wav}. The chunks' audio is kept until the copy finishes, even if ChunkFileManager is reset meanwhile
+     * @param chunks The chunks to copy
+     * @param folder The folder to copy the audio into
+     * @return The future of the copied files, in the same order as the chunks
+     */
+    public CompletableFuture<List<File>> copyWhenReady(List<Chunk> chunks, File folder) {
+        CompletableFuture<List<File>> copies = whenAllReady(chunks).thenApplyAsync(audioFiles -> {
+            List<File> copied = new ArrayList<>();
+            try {
+                for (int i = 0; i < audioFiles.size(); i++) {
+                    File copy = new File(folder, i + ".wav");
+                    Files.copy(audioFiles.get(i).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    copied.add(copy);
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return copied;
+        }, ThreadPool.DISK.getExecutor());
+
+        readers.add(copies);
+        copies.whenComplete((result, e) -> readers.remove(copies));
+        return copies;
+    }
+
+    /**
+     * Check whether the audio of a chunk can be read
+     * @param chunk The chunk
+     * @return The state of the chunk's audio
+     */
+    public AudioState getAudioState(Chunk chunk) {
+        CompletableFuture<File> chunkAudio = whenReady(chunk);
+        if (!chunkAudio.isDone()) {
+            return AudioState.SYNTHESIZING;
+        }
+        return chunkAudio.isCompletedExceptionally() ? AudioState.FAILED : AudioState.READY;
+    }
+
+    /**
+     * Get a future that completes once every given future has completed, whether or not it succeeded
+     */
+    private static CompletableFuture<Void> whenSettled(List<CompletableFuture<?>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((result, e) -> null);
     }
 
     /* Returns a ChunkFileBuilder */
     @Override
-    public ChunkFileBuilder getBuilder() {
+    public synchronized ChunkFileBuilder getBuilder() {
         File chunkFolder = new File(Folder.TEMP_CHUNKS.get(), Integer.toString(nextId++));
         chunkFolder.mkdirs();
         return new ChunkFileBuilder().setChunkFolder(chunkFolder);
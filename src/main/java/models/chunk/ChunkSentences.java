@@ -0,0 +1,195 @@
+package models.chunk;
+
+import main.ThreadPool;
+import models.audio.WavFile;
+import models.voice_synthesizer.VoiceSynthesizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * ChunkSentences splits the text of a long chunk into sentences, and long sentences into clauses, so the pieces can be
+ * synthesized in parallel rather than by one process. The speech of the pieces is joined back into the chunk's
+ * audio.wav with {@link WavFile#join(List, List, File)}, with a set pause after each sentence and a shorter one after
+ * each clause, so a chunk still has one audio file. Short text is kept whole, as splitting it gains nothing.
+ * @author Tait & Alex
+ */
+public class ChunkSentences {
+    /**
+     * The fewest words a text must have to be split
+     */
+    private static final int MIN_WORDS_TO_SPLIT = 12;
+
+    /**
+     * The fewest words in a piece, shorter pieces are joined to the next so few processes are started for little speech
+     */
+    private static final int MIN_PIECE_WORDS = 4;
+
+    /**
+     * The most words in a sentence before it is split into clauses
+     */
+    private static final int MAX_SENTENCE_WORDS = 16;
+
+    /**
+     * The pause after a sentence, in seconds
+     */
+    private static final double SENTENCE_PAUSE_SECONDS = 0.25;
+
+    /**
+     * The pause after a clause, in seconds
+     */
+    private static final double CLAUSE_PAUSE_SECONDS = 0.1;
+
+    /**
+     * Matches the space after clause punctuation
+     */
+    private static final Pattern CLAUSE_BOUNDARY = Pattern.compile("(?<=[,;:])\\s+");
+
+    /**
+     * The folder in a chunk's folder that the speech of each piece is saved in
+     */
+    private static final String PIECES_FOLDER = "sentences";
+
+    private final List<String> pieces = new ArrayList<>();
+    private final List<Double> pauses = new ArrayList<>(); // The pause after each piece but the last
+
+    /**
+     * Split text into pieces to synthesize
+     * @param text The text of a chunk
+     */
+    public ChunkSentences(String text) {
+        if (countWords(text) < MIN_WORDS_TO_SPLIT) {
+            pieces.add(text);
+            return;
+        }
+
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        sentences.setText(text);
+        int start = sentences.first();
+        for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+            String sentence = text.substring(start, end).trim();
+            if (sentence.isEmpty()) {
+                continue;
+            }
+            if (countWords(sentence) > MAX_SENTENCE_WORDS) {
+                for (String clause : CLAUSE_BOUNDARY.split(sentence)) {
+                    add(clause, CLAUSE_PAUSE_SECONDS);
+                }
+                pauses.set(pauses.size() - 1, SENTENCE_PAUSE_SECONDS);
+            } else {
+                add(sentence, SENTENCE_PAUSE_SECONDS);
+            }
+        }
+
+        // The last piece may be too short, and has no pause after it
+        int last = pieces.size() - 1;
+        if (last > 0 && countWords(pieces.get(last)) < MIN_PIECE_WORDS) {
+            pieces.set(last - 1, pieces.get(last - 1) + " " + pieces.remove(last));
+            pauses.remove(last);
+        }
+        pauses.remove(pauses.size() - 1);
+    }
+
+    /**
+     * Add a sentence or clause, joining it to the last piece if that is too short
+     */
+    private void add(String text, double pause) {
+        int last = pieces.size() - 1;
+        if (last >= 0 && countWords(pieces.get(last)) < MIN_PIECE_WORDS) {
+            pieces.set(last, pieces.get(last) + " " + text);
+            pauses.set(last, pause);
+        } else {
+            pieces.add(text);
+            pauses.add(pause);
+        }
+    }
+
+    private static int countWords(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+    }
+
+    /**
+     * Check whether the text was split
+     * @return True if the text is synthesized as more than one piece
+     */
+    public boolean isSplit() {
+        return pieces.size() > 1;
+    }
+
+    /**
+     * Get the pieces of the text, in order
+     * @return The pieces
+     */
+    List<String> getPieces() {
+        return Collections.unmodifiableList(pieces);
+    }
+
+    /**
+     * Create the folders the speech of each piece is saved in
+     * @param chunkFolder The folder of the chunk
+     * @return The folder of each piece, in the same order as the pieces
+     */
+    List<File> createFolders(File chunkFolder) {
+        List<File> folders = new ArrayList<>();
+        for (int i = 0; i < pieces.size(); i++) {
+            File folder = new File(chunkFolder, PIECES_FOLDER + File.separator + i);
+            folder.mkdirs();
+            folders.add(folder);
+        }
+        return folders;
+    }
+
+    /**
+     * Join the speech of the pieces into the chunk's audio.wav once all of it has been synthesized, on ThreadPool.DISK.
+     * The speech of the pieces is deleted once joined
+     * @param pieceAudio The future of the speech of each piece, in the same order as the pieces
+     * @param chunkFolder The folder of the chunk
+     * @return A future of the chunk's audio file, which completes exceptionally if any piece could not be synthesized
+     */
+    CompletableFuture<File> join(List<CompletableFuture<File>> pieceAudio, File chunkFolder) {
+        File audioFile = new File(chunkFolder, "audio.wav");
+        return CompletableFuture.allOf(pieceAudio.toArray(new CompletableFuture<?>[0])).thenApplyAsync(ignored -> {
+            List<File> audioFiles = new ArrayList<>();
+            for (CompletableFuture<File> future : pieceAudio) {
+                audioFiles.add(future.join());
+            }
+            try {
+                WavFile.join(audioFiles, pauses, audioFile);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                for (File file : audioFiles) {
+                    file.delete();
+                    file.getParentFile().delete();
+                }
+                new File(chunkFolder, PIECES_FOLDER).delete();
+            }
+            return audioFile;
+        }, ThreadPool.DISK.getExecutor());
+    }
+
+    /**
+     * Save text as a chunk's speech, synthesizing its pieces in parallel if it is long
+     * @param synthesizer The synthesizer of the chunk
+     * @param text The text of the chunk
+     * @param chunkFolder The folder to save audio.wav to
+     * @return A future of the chunk's audio file
+     */
+    static CompletableFuture<File> save(VoiceSynthesizer synthesizer, String text, File chunkFolder) {
+        ChunkSentences sentences = new ChunkSentences(text);
+        if (!sentences.isSplit()) {
+            return synthesizer.save(text, chunkFolder);
+        }
+        return sentences.join(synthesizer.saveAll(sentences.getPieces(), sentences.createFolders(chunkFolder)),
+                chunkFolder);
+    }
+}
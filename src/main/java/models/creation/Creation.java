@@ -1,13 +1,16 @@
 package models.creation;
 
+import constants.EncodingProfile;
 import constants.Music;
 import javafx.beans.property.*;
 import models.chunk.Chunk;
 
+import java.io.EOFException;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.io.OptionalDataException;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -59,6 +62,10 @@ public class Creation implements Externalizable {
      * The background msuci for this Creation
      */
     private ReadOnlyObjectWrapper<Music> backgroundMusic = new ReadOnlyObjectWrapper<>();
+    /**
+     * The encoding profile this Creation's video was rendered with
+     */
+    private ReadOnlyObjectWrapper<EncodingProfile> encodingProfile = new ReadOnlyObjectWrapper<>();
     /**
      * The date this Creation was created
      */
@@ -68,7 +75,7 @@ public class Creation implements Externalizable {
      * Public Default Constructor only to be called by deserializer
      */
     public Creation() {
-        this(null, null, null, null, null, null);
+        this(null, null, null, null, null, null, EncodingProfile.STANDARD);
     }
 
     /**
@@ -79,15 +86,17 @@ public class Creation implements Externalizable {
      * @param chunks
      * @param images
      * @param backgroundMusic
+     * @param encodingProfile
      */
     Creation(String name, String searchTerm, String searchText, List<Chunk> chunks, List<URL> images,
-             Music backgroundMusic) {
+             Music backgroundMusic, EncodingProfile encodingProfile) {
         setName(name);
         setSearchTerm(searchTerm);
         setSearchText(searchText);
         setChunks(chunks);
         setImages(images);
         setBackgroundMusic(backgroundMusic);
+        setEncodingProfile(encodingProfile);
         setConfidenceRating(0);
         setViewCount(0);
         setDateLastViewed(null);
@@ -115,6 +124,7 @@ public class Creation implements Externalizable {
         out.writeInt(getViewCount());
         out.writeObject(getDateLastViewed());
         out.writeObject(getDateCreated());
+        out.writeObject(getEncodingProfile()); // Written last so creations saved before profiles existed still load
     }
 
     /* Deserialize a Creation */
@@ -130,6 +140,11 @@ public class Creation implements Externalizable {
         setViewCount(in.readInt());
         setDateLastViewed((LocalDateTime) in.readObject());
         setDateLastViewed((LocalDateTime) in.readObject());
+        try {
+            setEncodingProfile((EncodingProfile) in.readObject());
+        } catch (OptionalDataException | EOFException e) { // Creations saved before profiles existed
+            setEncodingProfile(EncodingProfile.STANDARD);
+        }
     }
 
     /* JavaFX Beans (getters, setters and property) */
@@ -214,6 +229,16 @@ public class Creation implements Externalizable {
         return backgroundMusic.getReadOnlyProperty();
     }
 
+    public EncodingProfile getEncodingProfile() {
+        return encodingProfile.get();
+    }
+    private void setEncodingProfile(EncodingProfile encodingProfile) {
+        this.encodingProfile.set(encodingProfile);
+    }
+    public ReadOnlyObjectProperty<EncodingProfile> encodingProfileProperty() {
+        return encodingProfile.getReadOnlyProperty();
+    }
+
     public LocalDateTime getDateLastViewed() {
         return dateLastViewed.get();
     }
@@ -1,25 +1,40 @@
 package models.creation;
 
+import constants.EncodingProfile;
 import constants.Filename;
-import constants.Folder;
 import constants.Music;
-import controllers.AdaptivePanel;
+import javafx.application.Platform;
 import javafx.beans.property.*;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
+import main.ProcessPipeline;
 import main.ProcessRunner;
+import main.ThreadPool;
 import models.CallbackFileBuilder;
 import models.FileManager;
+import models.audio.WavFile;
+import models.cache.ArtifactCache;
 import models.chunk.Chunk;
 import models.chunk.ChunkFileManager;
 import models.images.ImageFileManager;
 import org.apache.commons.text.WordUtils;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implements a {@link CallbackFileBuilder} for {@link Creation} objects. {@code build()} creates a video file
@@ -31,11 +46,47 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
      * The progress states CreationFileBuilder may have after calling {@code build()}
      */
     public enum ProgressState {
+        QUEUED,
         BUILDING,
         SUCCEEDED,
-        FAILED;
+        FAILED,
+        CANCELLED;
     }
 
+    /**
+     * The render modes CreationFileBuilder may use to produce the video file
+     */
+    public enum RenderMode {
+        /**
+         * Render the video and thumbnail with a single FFmpeg process and filter graph, without intermediate files
+         */
+        FUSED,
+        /**
+         * Render the video through a chain of FFmpeg processes, writing intermediate files to the build folder
+         */
+        STAGED,
+        /**
+         * Encode the video of each image as a separate segment, with the segments encoded in parallel, then join the
+         * segments without encoding them again and add the audio once
+         */
+        SEGMENTED;
+    }
+
+    /**
+     * The frame rate of the segments encoded in {@code SEGMENTED} mode
+     */
+    private static final int SEGMENT_FRAME_RATE = 25;
+
+    /**
+     * The FFmpeg filter that scales and crops a frame to a thumbnail
+     */
+    private static final String THUMBNAIL_FILTER = "scale=80:60:force_original_aspect_ratio=increase,crop=80:60";
+
+    /**
+     * How long making a thumbnail may take before its process is killed
+     */
+    private static final long THUMBNAIL_TIMEOUT_SECONDS = 30;
+
     /* Fields set before build() is called */
     private String name;
     private String searchTerm;
@@ -43,21 +94,36 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
     private List<URL> images;
     private Music backgroundMusic;
     private File creationFolder;
-    private boolean edit;
+    private File buildFolder;
+    private List<Chunk> chunks;
+    private Creation editedCreation;
+    private RenderMode renderMode = RenderMode.FUSED;
+    private EncodingProfile encodingProfile = EncodingProfile.STANDARD;
 
     /* Fields set by CreationFileBuilder */
-    private File combinedAudio = new File(Folder.TEMP.get(), Filename.COMBINED_AUDIO.get());
-    private File backgroundAudio = new File(Folder.TEMP.get(), "background.mp3");
-    private File audio = new File(Folder.TEMP.get(), "audio.wav");
-    private File slideshowConfig = new File(Folder.TEMP.get(), "slideshow_config.txt");
-    private File slideshowVideo = new File(Folder.TEMP.get(), "slideshow.avi");
-    private File combinedVideo = new File(Folder.TEMP.get(), "combined.avi");
+    private List<File> chunkAudio = new ArrayList<>();
+    private CompletableFuture<List<File>> chunksReady = CompletableFuture.completedFuture(Collections.emptyList());
+    private CompletableFuture<List<File>> imagesReady = CompletableFuture.completedFuture(Collections.emptyList());
+    private File combinedAudio = null;
+    private File backgroundAudio = null;
+    private File audio = null;
+    private File slideshowConfig = null;
+    private File narrationConfig = null;
+    private File slideshowVideo = null;
     private File videoFile = null;
     private File thumbnailFile = null;
     private ReadOnlyObjectWrapper<ProgressState> state = new ReadOnlyObjectWrapper<>();
     private ReadOnlyStringWrapper progressMessage = new ReadOnlyStringWrapper();
+    private ReadOnlyObjectWrapper<Throwable> failure = new ReadOnlyObjectWrapper<>();
+    private ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(-1);
+    private volatile boolean cancelled;
+    private final List<Task<Void>> runningProcesses = Collections.synchronizedList(new ArrayList<>());
     private double backgroundMusicVolume = 0.3;
     private double imageDuration;
+    private double videoDuration;
+    private String combinedAudioKey;
+    private String slideshowKey;
+    private String backgroundAudioKey;
 
     /**
      * Package-private constructor called by {@link CreationFileManager}
@@ -101,6 +167,7 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
      */
     public CreationFileBuilder setImages(List<URL> images) {
         this.images = new ArrayList<>(images);
+        imagesReady = ImageFileManager.getInstance().downloadImages(this.images);
         return this;
     }
 
@@ -127,71 +194,496 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
     }
 
     /**
-     * Set whether the Builder is creating an edited creation
-     * @param edit True if the Builder is creating an edited creation
+     * Set the scratch folder this build writes its intermediate files to. Package-private, called by
+     * {@link CreationFileManager}, which owns the folder and removes it once the build has finished.
+     * @param buildFolder The scratch folder for this build
+     * @return {@code this}
+     */
+    CreationFileBuilder setBuildFolder(File buildFolder) {
+        this.buildFolder = buildFolder;
+        combinedAudio = new File(buildFolder, Filename.COMBINED_AUDIO.get());
+        backgroundAudio = new File(buildFolder, "background.mp3");
+        audio = new File(buildFolder, "audio.wav");
+        slideshowConfig = new File(buildFolder, "slideshow_config.txt");
+        narrationConfig = new File(buildFolder, "narration_config.txt");
+        slideshowVideo = new File(buildFolder, "slideshow.avi");
+        return this;
+    }
+
+    /**
+     * Set the chunks of the creation to be built. The audio of each chunk is copied into the build folder once it has
+     * been synthesized, so the build is unaffected if {@link ChunkFileManager} is reset for another creation while this
+     * one is queued or running. The build waits for every chunk's audio before it starts
+     * @param chunks The chunks of the creation to be built
+     * @return {@code this}
+     */
+    public CreationFileBuilder setChunks(List<Chunk> chunks) {
+        this.chunks = new ArrayList<>(chunks);
+        chunkAudio.clear();
+
+        File chunksFolder = new File(buildFolder, "chunks");
+        chunksFolder.mkdirs();
+        chunksReady = ChunkFileManager.getInstance().copyWhenReady(this.chunks, chunksFolder);
+        return this;
+    }
+
+    /**
+     * Set the chunks of the creation to be built, reading their audio from the given files rather than
+     * {@link ChunkFileManager}. Package-private, used by {@link CreationFileManager} to render stored creations again
+     * @param chunks The chunks of the creation to be built
+     * @param audioFiles The audio file of each chunk, in the same order as the chunks
+     * @return {@code this}
+     */
+    CreationFileBuilder setChunks(List<Chunk> chunks, List<File> audioFiles) {
+        this.chunks = new ArrayList<>(chunks);
+        chunksReady = CompletableFuture.completedFuture(Collections.emptyList());
+
+        File chunksFolder = new File(buildFolder, "chunks");
+        chunksFolder.mkdirs();
+        chunkAudio.clear();
+        for (int i = 0; i < this.chunks.size(); i++) {
+            File copy = new File(chunksFolder, i + ".wav");
+            try {
+                Files.copy(audioFiles.get(i).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                chunkAudio.clear();
+                return this;
+            }
+            chunkAudio.add(copy);
+        }
+        return this;
+    }
+
+    /**
+     * Set the creation that this build replaces when it succeeds. Leave unset when building a new creation
+     * @param editedCreation The creation being edited
+     * @return {@code this}
+     */
+    public CreationFileBuilder setEditedCreation(Creation editedCreation) {
+        this.editedCreation = editedCreation;
+        return this;
+    }
+
+    /**
+     * Set the {@link RenderMode} used to build the creation. Defaults to {@code FUSED}
+     * @param renderMode The render mode used to build the creation
+     * @return {@code this}
+     */
+    public CreationFileBuilder setRenderMode(RenderMode renderMode) {
+        this.renderMode = renderMode;
+        return this;
+    }
+
+    /**
+     * Set the {@link EncodingProfile} used to encode the creation's video. Defaults to {@code STANDARD}
+     * @param encodingProfile The encoding profile used to encode the video
      * @return {@code this}
      */
-    public CreationFileBuilder setEdit(boolean edit) {
-        this.edit = edit;
+    public CreationFileBuilder setEncodingProfile(EncodingProfile encodingProfile) {
+        this.encodingProfile = encodingProfile;
         return this;
     }
 
     @Override
     public void build(FileManager<Creation> caller) {
+        if (cancelled) {
+            return;
+        }
         setState(ProgressState.BUILDING);
+        setProgress(0);
 
-        combineAudio();
+        /* Wait for the audio of every chunk and every image, then start rendering on the JavaFX thread like the other
+         * stages */
+        CompletableFuture<Void> inputsReady = CompletableFuture.allOf(chunksReady, imagesReady);
+        if (!inputsReady.isDone()) {
+            setProgressMessage(chunksReady.isDone() ? "Downloading images..." : "Synthesizing snippets...");
+            inputsReady.whenComplete((ignored, e) -> Platform.runLater(this::startRender));
+            return;
+        }
+        startRender();
     }
 
-    public void combineAudio() {
-        setProgressMessage("Combining Snippets...");
+    /**
+     * Start rendering once the chunks' audio and the images are ready, choosing the stages from the edited creation and render mode
+     */
+    private void startRender() {
+        if (cancelled) {
+            return;
+        }
+        if (chunksReady.isCompletedExceptionally()) { // A chunk could not be synthesized or copied
+            setState(ProgressState.FAILED);
+            return;
+        }
+        if (imagesReady.isCompletedExceptionally()) { // An image could not be downloaded
+            setState(ProgressState.FAILED);
+            return;
+        }
+        if (chunkAudio.isEmpty()) {
+            chunkAudio.addAll(chunksReady.join());
+        }
 
-        ChunkFileManager chunkFileManager = ChunkFileManager.getInstance();
-        List<Chunk> chunks = chunkFileManager.getItems();
+        if (chunks == null || chunks.isEmpty() || chunkAudio.size() != chunks.size()) {
+            setState(ProgressState.FAILED);
+            return;
+        }
 
-        File combinedAudio = new File(Folder.TEMP.get(), Filename.COMBINED_AUDIO.get());
+        /* Reuse the edited creation's video where its inputs are unchanged */
+        if (editedCreation != null && CreationFileManager.getInstance().getVideoFile(editedCreation).exists()) {
+            boolean sameVideo = hasSameChunks(editedCreation.getChunks()) && hasSameImages(editedCreation.getImages())
+                    && searchTerm.equals(editedCreation.getSearchTerm())
+                    && encodingProfile == editedCreation.getEncodingProfile();
+            if (sameVideo && backgroundMusic == editedCreation.getBackgroundMusic()) {
+                saveChanges();
+                return;
+            } else if (sameVideo) {
+                replaceBackgroundMusic();
+                return;
+            }
+        }
 
-        if (chunks.size() == 1) {
-            chunkFileManager.getFile(chunks.get(0)).renameTo(combinedAudio);
-            calculateImageDuration();
+        if (renderMode == RenderMode.FUSED) {
+            renderFused();
+        } else if (renderMode == RenderMode.SEGMENTED) {
+            encodeSegments();
         } else {
-            String command;
+            combineAudio();
+        }
+    }
+
+    /**
+     * Renders the video and thumbnail in one FFmpeg process. The chunk audio and images are read through the concat
+     * demuxer, and the background music volume, mixing, text overlay and encoding are performed by a single filter
+     * graph. The video and thumbnail are stored in the {@link ArtifactCache}, keyed by the content of the inputs and
+     * the filter graph, so rendering the same creation again restores them instead
+     */
+    private void renderFused() {
+        setProgressMessage("Creating video...");
+
+        double duration = writeNarrationConfig();
+        if (duration < 0) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+        imageDuration = (duration + 0.1) / images.size();
+        videoDuration = duration;
+
+        if (!writeSlideshowConfig()) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+
+        boolean hasMusic = backgroundMusic != null && backgroundMusic != Music.TRACK_NONE;
+
+        /* Input 0 is the narration, input 1 is the slideshow and input 2 is the optional background music */
+        List<String> inputs = new ArrayList<>(Arrays.asList(
+                "-f", "concat", "-safe", "0", "-i", narrationConfig.toString(),
+                "-f", "concat", "-safe", "0", "-i", slideshowConfig.toString()));
+        String filterGraph = getFusedFilterGraph();
+        String audioMap = "0:a";
+        if (hasMusic) {
+            inputs.addAll(Arrays.asList("-i", backgroundMusic.getMusicFile().toString()));
+            audioMap = "[audio]";
+        }
+
+        List<String> command = ffmpeg(inputs, "-filter_complex", filterGraph,
+                "-map", "[video]", "-map", audioMap, "-vsync", "vfr", encodingProfile.getVideoOptions(),
+                encodingProfile.getAudioOptions(), "-max_muxing_queue_size", "4096", videoFile,
+                "-map", "[thumbnail]", "-frames:v", "1", thumbnailFile, "-y", "-v", "error",
+                "-progress", "pipe:1", "-nostats");
+
+        ArtifactCache cache = ArtifactCache.getInstance();
+        ArtifactCache.KeyBuilder key = cache.key("renderFused").add(filterGraph).add(String.format("%f", imageDuration))
+                .add(encodingProfile.getVideoOptions()).add(encodingProfile.getAudioOptions());
+        for (File chunkFile : chunkAudio) {
+            key.add(chunkFile);
+        }
+        ImageFileManager imageFileManager = ImageFileManager.getInstance();
+        for (URL image : images) {
+            key.add(imageFileManager.getFile(image));
+        }
+        if (hasMusic) {
+            key.add(backgroundMusic.getMusicFile());
+        }
+        String videoKey = key.build();
+        String thumbnailKey = videoKey == null ? null : cache.key("renderFusedThumbnail").add(videoKey).build();
+        if (videoKey != null && !cancelled && cache.restore(videoKey, videoFile)
+                && cache.restore(thumbnailKey, thumbnailFile)) {
+            setProgress(1);
+            saveCreation();
+            return;
+        }
 
-            List<String> commandList = new ArrayList<>();
-            commandList.add("sox");
-            for (Chunk chunk : chunks) {
-                commandList.add(String.format("'%s'", chunkFileManager.getFile(chunk)));
+        run(new ProcessRunner(command).setStage("renderFused").setProgressDuration(videoDuration), 1, () -> {
+            cache.put(videoKey, videoFile);
+            cache.put(thumbnailKey, thumbnailFile);
+            saveCreation();
+        });
+    }
+
+    /**
+     * Get the filter graph of the fused render. The slideshow is split into the video, which has the search term drawn
+     * on it and is scaled for the {@link EncodingProfile}, and the thumbnail. The background music, if any, is mixed
+     * under the narration. Package-private, used by tests
+     * @return The filter graph, with its outputs labelled {@code [video]}, {@code [thumbnail]} and, with background
+     * music, {@code [audio]}
+     */
+    String getFusedFilterGraph() {
+        String filterGraph = String.format(
+                "[1:v]split=2[slides][thumb];" +
+                "[slides]%s%s,format=yuv420p[video];" +
+                "[thumb]%s[thumbnail]",
+                getDrawtextFilter(), encodingProfile.getScaleFilter(), THUMBNAIL_FILTER);
+        if (backgroundMusic != null && backgroundMusic != Music.TRACK_NONE) {
+            filterGraph += ";" + getMusicFilter("0:a", "2:a");
+        }
+        return filterGraph;
+    }
+
+    /**
+     * Encodes the video of each image as its own H.264 segment, running the encodes in parallel across the available
+     * cores. Every segment is encoded at the same frame rate, size and settings, so the segments can be joined
+     * without encoding them again. Segments are cached, so an edit only encodes the images that changed
+     */
+    private void encodeSegments() {
+        setProgressMessage("Creating video...");
+
+        videoDuration = writeNarrationConfig();
+        if (videoDuration < 0) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+        imageDuration = (videoDuration + 0.1) / images.size();
+        int frames = Math.max(1, (int) Math.round(imageDuration * SEGMENT_FRAME_RATE));
+
+        /* Every segment must have the same size to be joined, so images are fitted into the size of the first image */
+        ImageFileManager imageFileManager = ImageFileManager.getInstance();
+        int[] size = getImageSize(imageFileManager.getFile(images.get(0)));
+        if (size == null) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+        int width = size[0] / 2 * 2; // yuv420p needs an even width and height
+        int height = size[1] / 2 * 2;
+        String filter = String.format("scale=%d:%d:force_original_aspect_ratio=decrease," +
+                        "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,setsar=1,%s%s,format=yuv420p",
+                width, height, width, height, getDrawtextFilter(), encodingProfile.getScaleFilter());
+
+        /* Encoders share the cores, so each encode is given its share of threads */
+        int cores = Runtime.getRuntime().availableProcessors();
+        int parallelism = Math.max(1, Math.min(images.size(), cores));
+        int threads = Math.max(1, cores / parallelism);
+
+        File segmentsFolder = new File(buildFolder, "segments");
+        segmentsFolder.mkdirs();
+        File segmentsConfig = new File(buildFolder, "segments_config.txt");
+        ArtifactCache cache = ArtifactCache.getInstance();
+        List<Task<Void>> encodes = new ArrayList<>();
+        try (FileWriter writer = new FileWriter(segmentsConfig)) {
+            for (int i = 0; i < images.size(); i++) {
+                File imageFile = imageFileManager.getFile(images.get(i));
+                File segment = new File(segmentsFolder, i + ".mp4");
+                writer.write(String.format("file '%s'\n", segment.getAbsolutePath()));
+
+                String key = cache.key("encodeSegment").add(imageFile).add(frames).add(filter)
+                        .add(encodingProfile.getVideoOptions()).build();
+                if (key != null && cache.restore(key, segment)) {
+                    continue;
+                }
+                List<String> command = ffmpeg("-loop", "1", "-framerate", SEGMENT_FRAME_RATE, "-i", imageFile,
+                        "-vf", filter, "-frames:v", frames, encodingProfile.getVideoOptions(), "-threads", threads,
+                        segment, "-y", "-v", "error");
+                ProcessRunner encode = new ProcessRunner(command).setStage("encodeSegment");
+                encode.setOnSucceeded(event -> cache.put(key, segment));
+                encodes.add(encode);
             }
-            commandList.add(combinedAudio.getPath());
-            command = String.join(" ", commandList);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+
+        /* The thumbnail is taken from the first image, alongside the segment encodes */
+        encodes.add(new ProcessRunner(ffmpeg("-i", imageFileManager.getFile(images.get(0)), "-vframes", "1",
+                "-filter", THUMBNAIL_FILTER, thumbnailFile, "-y", "-v", "error"))
+                .setStage("createThumbnail").setTimeout(THUMBNAIL_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        runAll(encodes, 0.9, () -> joinSegments(segmentsConfig));
+    }
 
-            ProcessRunner processRunner = new ProcessRunner(command);
-            processRunner.setOnSucceeded(event -> calculateImageDuration());
-            processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
+    /**
+     * Joins the encoded segments by copying their video streams, and encodes the narration and background music once
+     * for the whole video
+     * @param segmentsConfig The FFmpeg concat demuxer configuration listing the segments
+     */
+    private void joinSegments(File segmentsConfig) {
+        setProgressMessage("Saving creation...");
 
-            Executors.newSingleThreadExecutor().submit(processRunner);
+        /* Input 0 is the segments, input 1 is the narration and input 2 is the optional background music */
+        List<String> inputs = new ArrayList<>(Arrays.asList(
+                "-f", "concat", "-safe", "0", "-i", segmentsConfig.toString(),
+                "-f", "concat", "-safe", "0", "-i", narrationConfig.toString()));
+        List<String> audio = Arrays.asList("-map", "1:a");
+        if (backgroundMusic != null && backgroundMusic != Music.TRACK_NONE) {
+            inputs.addAll(Arrays.asList("-i", backgroundMusic.getMusicFile().toString()));
+            audio = Arrays.asList("-filter_complex", getMusicFilter("1:a", "2:a"), "-map", "[audio]");
         }
+
+        List<String> command = ffmpeg(inputs, "-map", "0:v", audio, "-c:v", "copy", encodingProfile.getAudioOptions(),
+                videoFile, "-y", "-v", "error", "-progress", "pipe:1", "-nostats");
+
+        run(new ProcessRunner(command).setStage("joinSegments").setProgressDuration(videoDuration), 1,
+                this::saveCreation);
     }
 
-    private void calculateImageDuration() {
-        setProgressMessage("Calculating duration...");
+    /**
+     * Read the width and height of an image from its header, without decoding the image. Package-private, used by tests
+     * @param imageFile The image file
+     * @return The width and height of the image, or null if the image could not be read
+     */
+    static int[] getImageSize(File imageFile) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-        Media media = new Media(combinedAudio.toURI().toString());
+    /**
+     * Saves the changes to an edited creation whose video is unaffected. The edited creation's folder is reused and only
+     * its serialized {@link Creation} is rewritten
+     */
+    private void saveChanges() {
+        setProgressMessage("Saving changes...");
 
-        MediaPlayer mediaPlayer = new MediaPlayer(media);
-        mediaPlayer.setOnReady(() -> {
-            imageDuration = (media.getDuration().toSeconds() +0.1) / images.size();
-            createSlideshow();
-        });
+        Creation creation = new Creation(name, searchTerm, searchText, chunks, images, backgroundMusic,
+                encodingProfile);
+        CreationFileManager.getInstance().replace(creation, editedCreation);
+        creationFolder.delete(); // The new creation folder is empty and unused
+
+        setProgress(1);
+        setState(ProgressState.SUCCEEDED);
+    }
+
+    /**
+     * Replaces the background music of an edited creation whose chunks, images and search term are unchanged. The
+     * edited creation's video stream and thumbnail are copied, and only the audio is mixed and encoded again
+     */
+    private void replaceBackgroundMusic() {
+        setProgressMessage("Replacing background music...");
+
+        videoDuration = writeNarrationConfig();
+        if (videoDuration < 0) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+
+        CreationFileManager creationFileManager = CreationFileManager.getInstance();
+        try {
+            Files.copy(creationFileManager.getThumbnailFile(editedCreation).toPath(), thumbnailFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+
+        /* Input 0 is the edited creation's video, input 1 is the narration and input 2 is the optional music */
+        List<String> inputs = new ArrayList<>(Arrays.asList(
+                "-i", creationFileManager.getVideoFile(editedCreation).toString(),
+                "-f", "concat", "-safe", "0", "-i", narrationConfig.toString()));
+        List<String> audio = Arrays.asList("-map", "1:a");
+        if (backgroundMusic != null && backgroundMusic != Music.TRACK_NONE) {
+            inputs.addAll(Arrays.asList("-i", backgroundMusic.getMusicFile().toString()));
+            audio = Arrays.asList("-filter_complex", getMusicFilter("1:a", "2:a"), "-map", "[audio]");
+        }
+
+        List<String> command = ffmpeg(inputs, "-map", "0:v", audio, "-c:v", "copy", encodingProfile.getAudioOptions(),
+                videoFile, "-y", "-v", "error", "-progress", "pipe:1", "-nostats");
+
+        run(new ProcessRunner(command).setStage("replaceBackgroundMusic").setProgressDuration(videoDuration), 1,
+                this::saveCreation);
+    }
+
+    /**
+     * Joins the chunk audio in the JVM by copying the PCM data of each chunk behind a single WAV header. The narration
+     * duration is calculated from the WAV headers
+     */
+    public void combineAudio() {
+        setProgressMessage("Combining Snippets...");
+
+        try {
+            videoDuration = WavFile.concatenate(chunkAudio, combinedAudio);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        imageDuration = (videoDuration +0.1) / images.size();
+
+        ArtifactCache.KeyBuilder key = ArtifactCache.getInstance().key("combineAudio");
+        for (File chunkFile : chunkAudio) {
+            key.add(chunkFile);
+        }
+        combinedAudioKey = key.build();
+
+        setProgress(0.05);
+        createSlideshow();
     }
 
     private void createSlideshow() {
         setProgressMessage("Creating video...");
 
-        /* Write FFmpeg slidehow configuration file */
-        try {
-            FileWriter writer = new FileWriter(slideshowConfig);
+        if (!writeSlideshowConfig()) {
+            setState(ProgressState.FAILED);
+            return;
+        }
+
+        List<String> command = ffmpeg("-f", "concat", "-safe", "0", "-i", slideshowConfig, "-vsync", "vfr",
+                "-pix_fmt", "yuv420p", slideshowVideo, "-y", "-v", "error");
 
+        ArtifactCache.KeyBuilder key = ArtifactCache.getInstance().key("createSlideshow")
+                .add(String.format("%f", imageDuration));
+        ImageFileManager imageFileManager = ImageFileManager.getInstance();
+        for (URL image : images) {
+            key.add(imageFileManager.getFile(image));
+        }
+        slideshowKey = key.build();
+
+        runCached(slideshowKey, slideshowVideo, new ProcessRunner(command).setStage("createSlideshow"), 0.2,
+                this::createThumbnail);
+    }
+
+    /**
+     * Write the FFmpeg concat demuxer configuration that joins the chunk audio, reading the narration duration from
+     * the chunk audio headers
+     * @return The duration of the narration in seconds, or -1 if the configuration could not be written
+     */
+    private double writeNarrationConfig() {
+        double duration = 0;
+        try (FileWriter writer = new FileWriter(narrationConfig)) {
+            for (File chunkFile : chunkAudio) {
+                duration += new WavFile(chunkFile).getDuration();
+                writer.write(String.format("file '%s'\n", chunkFile.getAbsolutePath()));
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return duration;
+    }
+
+    /**
+     * Write the FFmpeg concat demuxer configuration that shows each image for {@code imageDuration} seconds
+     * @return True if the configuration was written
+     */
+    private boolean writeSlideshowConfig() {
+        try (FileWriter writer = new FileWriter(slideshowConfig)) {
             String previous = null;
             ImageFileManager imageFileManager = ImageFileManager.getInstance();
             for (URL image: images) {
@@ -203,50 +695,38 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
             if (previous != null) {
                 writer.write(previous);
             }
-
-            writer.close();
         } catch (IOException e) {
-            setState(ProgressState.FAILED);
-            return;
+            return false;
         }
-
-        String command = String.format(
-                "ffmpeg -f concat -safe 0 -i '%s' -vsync vfr -pix_fmt yuv420p '%s' -v quiet",
-                slideshowConfig.toString(), slideshowVideo.toString());
-
-        ProcessRunner slideshowMaker = new ProcessRunner(command);
-        slideshowMaker.setOnSucceeded(event -> createThumbnail());
-        slideshowMaker.setOnFailed(event -> setState(ProgressState.FAILED));
-
-        Executors.newSingleThreadExecutor().submit(slideshowMaker);
+        return true;
     }
 
     private void createThumbnail() {
         setProgressMessage("Creating thumbnail...");
 
-        String command = String.format(
-                "ffmpeg -i %s -vframes 1 -filter \"scale=80:60:force_original_aspect_ratio=increase,crop=80:60\" %s",
-                slideshowVideo.toString(), thumbnailFile.toString());
+        List<String> command = ffmpeg("-i", slideshowVideo, "-vframes", "1", "-filter", THUMBNAIL_FILTER, thumbnailFile,
+                "-y", "-v", "error");
 
-        ProcessRunner processRunner = new ProcessRunner(command);
-        processRunner.setOnSucceeded(event -> setBackgroundMusicVolume());
-        processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
+        String key = slideshowKey == null ? null : ArtifactCache.getInstance().key("createThumbnail")
+                .add(slideshowKey).build();
 
-        Executors.newSingleThreadExecutor().submit(processRunner);
+        ProcessRunner thumbnail = new ProcessRunner(command).setStage("createThumbnail")
+                .setTimeout(THUMBNAIL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        runCached(key, thumbnailFile, thumbnail, 0.25, this::setBackgroundMusicVolume);
     }
 
     private void setBackgroundMusicVolume() {
         setProgressMessage("Adding background music...");
 
         if (backgroundMusic != null && backgroundMusic != Music.TRACK_NONE) {
-            String command = String.format("ffmpeg -i %s -filter:a \"volume=%s\" %s",
-                    backgroundMusic.getMusicFile().toString(), backgroundMusicVolume, backgroundAudio.toString());
+            List<String> command = ffmpeg("-i", backgroundMusic.getMusicFile(), "-filter:a",
+                    "volume=" + backgroundMusicVolume, backgroundAudio, "-y", "-v", "error");
 
-            ProcessRunner processRunner = new ProcessRunner(command);
-            processRunner.setOnSucceeded(event -> addBackgroundMusic());
-            processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
+            backgroundAudioKey = ArtifactCache.getInstance().key("setBackgroundMusicVolume")
+                    .add(backgroundMusic.getMusicFile()).add(backgroundMusicVolume).build();
 
-            Executors.newSingleThreadExecutor().submit(processRunner);
+            ProcessRunner volume = new ProcessRunner(command).setStage("setBackgroundMusicVolume");
+            runCached(backgroundAudioKey, backgroundAudio, volume, 0.3, this::addBackgroundMusic);
         } else {
             addBackgroundMusic();
         }
@@ -254,64 +734,326 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
 
     private void addBackgroundMusic() {
         if (backgroundMusic != null && backgroundMusic != Music.TRACK_NONE) {
-            String command = String.format("ffmpeg -i %s -i %s -filter_complex amix=inputs=2:duration=shortest %s",
-                    combinedAudio.toString(), backgroundAudio.toString(), audio.toString());
+            List<String> command = ffmpeg("-i", combinedAudio, "-i", backgroundAudio,
+                    "-filter_complex", "amix=inputs=2:duration=shortest", audio, "-y", "-v", "error");
 
-            ProcessRunner processRunner = new ProcessRunner(command);
-            processRunner.setOnSucceeded(event -> combineVideo());
-            processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
+            String key = combinedAudioKey == null || backgroundAudioKey == null ? null :
+                    ArtifactCache.getInstance().key("addBackgroundMusic")
+                            .add(combinedAudioKey).add(backgroundAudioKey).build();
 
-            Executors.newSingleThreadExecutor().submit(processRunner);
+            runCached(key, audio, new ProcessRunner(command).setStage("addBackgroundMusic"), 0.35, this::convertVideo);
         } else {
             combinedAudio.renameTo(audio);
-            combineVideo();
+            convertVideo();
         }
     }
 
-    private void combineVideo() {
-        setProgressMessage("Adding audio...");
+    /**
+     * Add the audio to the slideshow and encode the final video. The muxed stream is piped straight into the encoder
+     * as NUT rather than being written to a temporary file, so encoding starts as soon as the first packets are muxed
+     */
+    private void convertVideo() {
+        setProgressMessage("Saving creation...");
+
+        ProcessPipeline pipeline = new ProcessPipeline()
+                .then(ffmpeg("-i", audio, "-i", slideshowVideo, "-c", "copy", "-f", "nut", "pipe:1", "-v", "error"))
+                .then(ffmpeg("-f", "nut", "-i", "pipe:0", "-vf", getDrawtextFilter() + encodingProfile.getScaleFilter(),
+                        encodingProfile.getVideoOptions(), encodingProfile.getAudioOptions(),
+                        "-max_muxing_queue_size", "4096", videoFile, "-y", "-v", "error",
+                        "-progress", "pipe:1", "-nostats"))
+                .setStage("convertVideo")
+                .setProgressDuration(videoDuration);
 
-        String command = String.format("ffmpeg -i '%s' -i '%s' -c copy '%s' -v quiet",
-                audio.toString(), slideshowVideo.toString(), combinedVideo.toString());
+        run(pipeline, 1, this::saveCreation);
+    }
+
+    /**
+     * Run a stage's process, then continue with the next stage if it succeeds. Stages are not started once the build
+     * has been cancelled. Progress moves from its current value towards {@code progressEnd} as the process reports
+     * progress, and reaches {@code progressEnd} when the process succeeds.
+     * @param processRunner The process of this stage, either a {@link ProcessRunner} or a {@link ProcessPipeline}
+     * @param progressEnd The progress of the build once this stage has succeeded
+     * @param next The next stage
+     */
+    private void run(Task<Void> processRunner, double progressEnd, Runnable next) {
+        if (cancelled) {
+            return;
+        }
+        runningProcesses.add(processRunner);
 
-        ProcessRunner processRunner = new ProcessRunner(command);
-        processRunner.setOnSucceeded(event -> convertVideo());
-        processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
+        double progressStart = Math.max(getProgress(), 0);
+        processRunner.progressProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue.doubleValue() >= 0 && !cancelled) {
+                setProgress(progressStart + newValue.doubleValue() * (progressEnd - progressStart));
+            }
+        });
+        processRunner.setOnSucceeded(event -> {
+            runningProcesses.remove(processRunner);
+            if (!cancelled) {
+                setProgress(progressEnd);
+                next.run();
+            }
+        });
+        processRunner.setOnFailed(event -> {
+            runningProcesses.remove(processRunner);
+            if (!cancelled) {
+                fail(processRunner.getException());
+            }
+        });
 
-        Executors.newSingleThreadExecutor().submit(processRunner);
+        ThreadPool.PROCESS.submit(processRunner);
     }
 
-    private void convertVideo() {
-        setProgressMessage("Saving creation...");
+    /**
+     * Fail the build, showing the stage that failed and the first line of the reason in the progress message
+     * @param exception The exception the stage failed with
+     */
+    private void fail(Throwable exception) {
+        String stage = getProgressMessage() == null ? "Build" : getProgressMessage().replace("...", "");
+        String reason = exception == null || exception.getMessage() == null ? "unknown error" :
+                exception.getMessage().split("\n", 2)[0];
+        setFailure(exception);
+        setProgressMessage(String.format("%s failed: %s", stage, reason));
+        setState(ProgressState.FAILED);
+    }
 
-        String drawtextSubcommand = String.format(
-                "\"drawtext=fontfile=.bin/Montserrat-Regular.ttf:fontsize=120:fontcolor=white:x=(w-text_w)/2:y=(h-text_h)/2:" +
-                        "borderw=3:bordercolor=0x333333@0x33:text=%s\"", WordUtils.capitalizeFully(searchTerm));
-        String command = String.format("ffmpeg -i %s -vf %s -c:v libx264 -crf 19 -preset slow -c:a libfdk_aac " +
-                        "-b:a 192k -ac 2  -max_muxing_queue_size 4096 %s -v quiet",
-                combinedVideo.getPath(), drawtextSubcommand, videoFile.toString());
+    /**
+     * Run the processes of a stage in parallel on {@link ThreadPool#PROCESS}, then continue with the next stage once all
+     * of them succeed. If any process fails, the others are cancelled and the build fails. Progress moves from its
+     * current value towards {@code progressEnd} as the processes finish. Existing {@code onSucceeded} handlers of the
+     * processes are run before the stage continues
+     * @param processRunners The processes of this stage
+     * @param progressEnd The progress of the build once this stage has succeeded
+     * @param next The next stage
+     */
+    private void runAll(List<Task<Void>> processRunners, double progressEnd, Runnable next) {
+        if (cancelled) {
+            return;
+        }
+        if (processRunners.isEmpty()) {
+            setProgress(progressEnd);
+            next.run();
+            return;
+        }
+        runningProcesses.addAll(processRunners);
 
-        ProcessRunner processRunner = new ProcessRunner(command);
+        double progressStart = Math.max(getProgress(), 0);
+        int[] remaining = {processRunners.size()}; // Only changed by the handlers, which run on the FX thread
+        for (Task<Void> processRunner : processRunners) {
+            EventHandler<WorkerStateEvent> onSucceeded = processRunner.getOnSucceeded();
+            processRunner.setOnSucceeded(event -> {
+                runningProcesses.remove(processRunner);
+                if (onSucceeded != null) {
+                    onSucceeded.handle(event);
+                }
+                remaining[0]--;
+                if (!cancelled && getState() == ProgressState.BUILDING) {
+                    setProgress(progressStart + (processRunners.size() - remaining[0]) * (progressEnd - progressStart)
+                            / processRunners.size());
+                    if (remaining[0] == 0) {
+                        next.run();
+                    }
+                }
+            });
+            processRunner.setOnFailed(event -> {
+                runningProcesses.remove(processRunner);
+                if (!cancelled && getState() == ProgressState.BUILDING) {
+                    fail(processRunner.getException());
+                    cancelRunningProcesses();
+                }
+            });
+            ThreadPool.PROCESS.submit(processRunner);
+        }
+    }
 
-        processRunner.setOnSucceeded(event -> {
-            List<Chunk> chunks = new ArrayList<>(ChunkFileManager.getInstance().getItems());
-            Creation creation = new Creation(name, searchTerm, searchText, chunks, images, backgroundMusic);
+    /**
+     * Run a stage whose output is stored in the {@link ArtifactCache}. If the output is already cached it is restored
+     * and the process is not run, otherwise the output is cached once the process succeeds.
+     * @param key The key of the stage's output, or null if the output should not be cached
+     * @param output The output file of the stage
+     * @param processRunner The process of this stage
+     * @param progressEnd The progress of the build once this stage has succeeded
+     * @param next The next stage
+     */
+    private void runCached(String key, File output, ProcessRunner processRunner, double progressEnd, Runnable next) {
+        ArtifactCache cache = ArtifactCache.getInstance();
+        if (key != null && !cancelled && cache.restore(key, output)) {
+            setProgress(progressEnd);
+            next.run();
+            return;
+        }
+        run(processRunner, progressEnd, () -> {
+            cache.put(key, output);
+            next.run();
+        });
+    }
 
-            if (edit) {
-                CreationFileManager.getInstance().edit(creation, creationFolder, AdaptivePanel.getSelectedCreation());
+    /**
+     * Cancel this build. A queued build will not start, and the process of a running build is killed. Package-private,
+     * called by {@link RenderScheduler}, which removes the build's files
+     */
+    void cancel() {
+        cancelled = true;
+        cancelRunningProcesses();
+        setState(ProgressState.CANCELLED);
+    }
+
+    /**
+     * Cancel every process of this build that is queued or running
+     */
+    private void cancelRunningProcesses() {
+        List<Task<Void>> processes;
+        synchronized (runningProcesses) {
+            processes = new ArrayList<>(runningProcesses);
+        }
+        for (Task<Void> process : processes) {
+            process.cancel();
+        }
+    }
+
+    /**
+     * Get the FFmpeg filter that lowers the volume of the background music and mixes it under the narration
+     * @param narration The stream specifier of the narration
+     * @param music The stream specifier of the background music
+     * @return The filter, with its output labelled {@code [audio]}
+     */
+    private String getMusicFilter(String narration, String music) {
+        return String.format("[%s]volume=%s[background];[%s][background]amix=inputs=2:duration=shortest[audio]",
+                music, backgroundMusicVolume, narration);
+    }
+
+    /**
+     * Check whether the chunks of the edited creation have the same text and voice, in the same order, as the chunks
+     * being built
+     * @param editedChunks The chunks of the edited creation
+     * @return True if the chunks are the same
+     */
+    private boolean hasSameChunks(List<Chunk> editedChunks) {
+        if (editedChunks == null || editedChunks.size() != chunks.size()) {
+            return false;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            Chunk editedChunk = editedChunks.get(i);
+            if (!chunk.getText().equals(editedChunk.getText()) ||
+                    !chunk.getVoiceSynthesizer().equals(editedChunk.getVoiceSynthesizer())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the images of the edited creation are the same, in the same order, as the images being built.
+     * URLs are compared by their text, as {@link URL#equals(Object)} resolves host names
+     * @param editedImages The images of the edited creation
+     * @return True if the images are the same
+     */
+    private boolean hasSameImages(List<URL> editedImages) {
+        if (editedImages == null || editedImages.size() != images.size()) {
+            return false;
+        }
+        for (int i = 0; i < images.size(); i++) {
+            if (!images.get(i).toExternalForm().equals(editedImages.get(i).toExternalForm())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build an FFmpeg argument list. Arguments that are collections are added element by element, and other arguments
+     * are added as text, so files and numbers can be passed directly. FFmpeg is told not to read the keyboard, as
+     * nothing is written to its standard input
+     * @param arguments The arguments after the program name
+     * @return The program name followed by the arguments
+     */
+    private static List<String> ffmpeg(Object... arguments) {
+        List<String> command = new ArrayList<>(Arrays.asList("ffmpeg", "-nostdin"));
+        for (Object argument : arguments) {
+            if (argument instanceof Collection) {
+                for (Object element : (Collection<?>) argument) {
+                    command.add(element.toString());
+                }
             } else {
-                CreationFileManager.getInstance().save(creation, creationFolder);
+                command.add(argument.toString());
             }
+        }
+        return command;
+    }
 
-            setState(ProgressState.SUCCEEDED);
-        });
-//        processRunner.setOnFailed(event -> setState(ProgressState.FAILED));
-        processRunner.setOnFailed(event -> {
-            setState(ProgressState.FAILED);
-            processRunner.getException().printStackTrace();
-        });
+    /**
+     * Get the FFmpeg drawtext filter that overlays the search term on the video
+     * @return The drawtext filter
+     */
+    private String getDrawtextFilter() {
+        return String.format("drawtext=fontfile=.bin/Montserrat-Regular.ttf:fontsize=120:fontcolor=white:" +
+                "x=(w-text_w)/2:y=(h-text_h)/2:borderw=3:bordercolor=0x333333@0x33:text=%s",
+                WordUtils.capitalizeFully(searchTerm));
+    }
 
-        Executors.newSingleThreadExecutor().submit(processRunner);
+    /**
+     * Save the built {@link Creation} to {@link CreationFileManager} once its video and thumbnail exist
+     */
+    private void saveCreation() {
+        if (cancelled) {
+            return;
+        }
+        /* Keep the chunk audio with the creation so editing it does not need to synthesize the chunks again */
+        File chunksFolder = new File(creationFolder, Filename.CHUNKS.get());
+        chunksFolder.mkdirs();
+        try {
+            for (int i = 0; i < chunkAudio.size(); i++) {
+                Files.copy(chunkAudio.get(i).toPath(), new File(chunksFolder, i + ".wav").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+
+        Creation creation = new Creation(name, searchTerm, searchText, chunks, images, backgroundMusic,
+                encodingProfile);
+
+        if (editedCreation != null) {
+            CreationFileManager.getInstance().edit(creation, creationFolder, editedCreation);
+        } else {
+            CreationFileManager.getInstance().save(creation, creationFolder);
+        }
+
+        setState(ProgressState.SUCCEEDED);
+    }
+
+    /**
+     * Mark this builder as waiting for a free build slot. Package-private, called by {@link RenderScheduler}
+     */
+    void setQueued() {
+        setState(ProgressState.QUEUED);
+        setProgressMessage("Waiting for other creations to finish...");
+    }
+
+    /**
+     * Get the name of the creation to be built. Package-private, used by {@link RenderJob}
+     * @return The name of the creation to be built
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the folder the creation is built in. Package-private, used by {@link CreationFileManager}
+     * @return The creation folder
+     */
+    File getCreationFolder() {
+        return creationFolder;
+    }
+
+    /**
+     * Get the scratch folder of this build. Package-private, used by {@link CreationFileManager}
+     * @return The build folder
+     */
+    File getBuildFolder() {
+        return buildFolder;
     }
 
     /* JavaFX Beans (getters, setters, property) */
@@ -326,6 +1068,16 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
         return state.getReadOnlyProperty();
     }
 
+    public double getProgress() {
+        return progress.get();
+    }
+    private void setProgress(double progress) {
+        this.progress.set(progress);
+    }
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
     public String getProgressMessage() {
         return progressMessage.get();
     }
@@ -335,4 +1087,14 @@ public class CreationFileBuilder implements CallbackFileBuilder<Creation> {
     public ReadOnlyStringProperty progressMessageProperty() {
         return progressMessage.getReadOnlyProperty();
     }
+
+    public Throwable getFailure() {
+        return failure.get();
+    }
+    private void setFailure(Throwable failure) {
+        this.failure.set(failure);
+    }
+    public ReadOnlyObjectProperty<Throwable> failureProperty() {
+        return failure.getReadOnlyProperty();
+    }
 }
\ No newline at end of file
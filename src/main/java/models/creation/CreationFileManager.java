@@ -1,14 +1,19 @@
 package models.creation;
 
+import constants.EncodingProfile;
 import constants.Filename;
 import constants.Folder;
 import javafx.beans.Observable;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.util.Callback;
+import main.ThreadPool;
+import models.CallbackFileBuilder;
 import models.FileManager;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * CreationFileManager is a singleton {@link FileManager} for {@link Creation} items. It ensures that {@link Creation}'s
@@ -38,6 +43,11 @@ public class CreationFileManager extends FileManager<Creation> {
             creationsFolder.mkdir();
         }
 
+        /* Remove build folders left behind by a previous session */
+        File buildsFolder = Folder.TEMP_BUILDS.get();
+        recursiveDelete(buildsFolder);
+        buildsFolder.mkdirs();
+
         /* Setup items with a property extractor */
         items = FXCollections.observableArrayList(new Callback<Creation, Observable[]>() {
             @Override
@@ -126,12 +136,67 @@ public class CreationFileManager extends FileManager<Creation> {
         return instance;
     }
 
-    /* Get a new CreationFileBuilder */
+    /* Get a new CreationFileBuilder with its own creation and build folders */
     @Override
-    public CreationFileBuilder getBuilder() {
-        File folder = new File(Folder.CREATIONS.get(), Integer.toString(nextId++));
+    public synchronized CreationFileBuilder getBuilder() {
+        String id = Integer.toString(nextId++);
+        File folder = new File(Folder.CREATIONS.get(), id);
         folder.mkdirs();
-        return new CreationFileBuilder().setCreationFolder(folder);
+        File buildFolder = new File(Folder.TEMP_BUILDS.get(), id);
+        buildFolder.mkdirs();
+        return new CreationFileBuilder().setCreationFolder(folder).setBuildFolder(buildFolder);
+    }
+
+    /* Submit a CreationFileBuilder to the RenderScheduler */
+    @Override
+    public void create(CallbackFileBuilder<Creation> builder) {
+        RenderScheduler.getInstance().submit((CreationFileBuilder) builder);
+    }
+
+    /**
+     * Render a creation again with another {@link EncodingProfile}, such as upgrading a draft to a final render. The
+     * render is queued with background priority and reuses the creation's stored chunk audio. The creation is replaced
+     * once the render succeeds
+     * @param creation The creation to render again
+     * @param encodingProfile The encoding profile to render the creation with
+     * @return The job rendering the creation, or null if the creation's chunk audio is not stored
+     */
+    public RenderJob upgrade(Creation creation, EncodingProfile encodingProfile) {
+        List<File> chunkAudio = new ArrayList<>();
+        for (int i = 0; i < creation.getChunks().size(); i++) {
+            File chunkFile = getChunkAudioFile(creation, i);
+            if (!chunkFile.exists()) {
+                return null;
+            }
+            chunkAudio.add(chunkFile);
+        }
+
+        CreationFileBuilder builder = getBuilder();
+        builder.setName(creation.getName());
+        builder.setSearchTerm(creation.getSearchTerm());
+        builder.setSearchText(creation.getSearchText());
+        builder.setImages(creation.getImages());
+        builder.setBackgroundMusic(creation.getBackgroundMusic());
+        builder.setChunks(creation.getChunks(), chunkAudio);
+        builder.setEditedCreation(creation);
+        builder.setEncodingProfile(encodingProfile);
+
+        return RenderScheduler.getInstance().submit(builder, RenderScheduler.BACKGROUND_PRIORITY);
+    }
+
+    /**
+     * Remove the build folder of a finished builder, and its creation folder if the build did not succeed. The folders
+     * are removed on {@link ThreadPool#DISK}. Package-private, called by {@link RenderScheduler}
+     * @param builder The builder that has finished
+     */
+    void cleanUp(CreationFileBuilder builder) {
+        boolean succeeded = builder.getState() == CreationFileBuilder.ProgressState.SUCCEEDED;
+        ThreadPool.DISK.submit(() -> {
+            recursiveDelete(builder.getBuildFolder());
+            if (!succeeded) {
+                recursiveDelete(builder.getCreationFolder());
+            }
+        });
     }
 
     /* Saves a creation. */
@@ -154,6 +219,28 @@ public class CreationFileManager extends FileManager<Creation> {
         save(newCreation, folder);
     }
 
+    /**
+     * Replace a creation with an edited creation that reuses its folder, video and thumbnail
+     * @param newCreation The edited creation
+     * @param oldCreation The creation being replaced
+     */
+    void replace(Creation newCreation, Creation oldCreation) {
+        File folder = getFile(oldCreation);
+        items.remove(oldCreation);
+        files.remove(oldCreation);
+        save(newCreation, folder);
+    }
+
+    /**
+     * Get the stored audio file of one of a creation's chunks
+     * @param creation The creation whose chunk audio to get
+     * @param index The index of the chunk in the creation
+     * @return The audio file of the chunk, which does not exist for creations made before chunk audio was stored
+     */
+    public File getChunkAudioFile(Creation creation, int index) {
+        return new File(new File(getFile(creation), Filename.CHUNKS.get()), index + ".wav");
+    }
+
     /**
      * Update a creation's mutable fields by reserializing
      * @param creation The creation to update
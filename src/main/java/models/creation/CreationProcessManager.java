@@ -1,6 +1,6 @@
 package models.creation;
 
-import constants.Folder;
+import constants.EncodingProfile;
 import constants.Music;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
@@ -8,10 +8,11 @@ import javafx.collections.ObservableList;
 import models.chunk.Chunk;
 import models.chunk.ChunkFileBuilder;
 import models.chunk.ChunkFileManager;
-import models.images.ImageSearcher;
+import models.images.ImageFileManager;
 
-import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * CreationProcessManager is a singleton that maintains the state of the form to Create and Edit {@link Creation}'s across the
@@ -48,6 +49,14 @@ public class CreationProcessManager {
      * This field maintains the progress state of {@link CreationFileBuilder}
      */
     private ReadOnlyObjectWrapper<CreationFileBuilder.ProgressState> progressState = new ReadOnlyObjectWrapper<>();
+    /**
+     * This field maintains the numeric progress of {@link CreationFileBuilder}, or -1 when it is indeterminate
+     */
+    private ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(-1);
+    /**
+     * The {@link RenderJob} building the {@link Creation}, or null if it has not been submitted
+     */
+    private RenderJob renderJob;
 
     /* Form data fields */
     /**
@@ -70,6 +79,19 @@ public class CreationProcessManager {
      * The background music for the {@link Creation} to be built
      */
     private ObjectProperty<Music> backgroundMusic = new SimpleObjectProperty<>();
+    /**
+     * The {@link Creation} being edited, or null when creating a new {@link Creation}
+     */
+    private Creation editedCreation;
+    /**
+     * The {@link CreationFileBuilder.RenderMode} used to build the {@link Creation}
+     */
+    private ObjectProperty<CreationFileBuilder.RenderMode> renderMode =
+            new SimpleObjectProperty<>(CreationFileBuilder.RenderMode.FUSED);
+    /**
+     * The {@link EncodingProfile} used to encode the video of the {@link Creation} to be built
+     */
+    private ObjectProperty<EncodingProfile> encodingProfile = new SimpleObjectProperty<>();
 
     /**
      * Constructs a CreationProcessManager with default data fields
@@ -82,6 +104,7 @@ public class CreationProcessManager {
         setSearchText("");
         setImages(FXCollections.observableArrayList());
         setBackgroundMusic(Music.TRACK_NONE);
+        setEncodingProfile(EncodingProfile.STANDARD);
     }
 
     /**
@@ -106,16 +129,15 @@ public class CreationProcessManager {
         /* Reset ChunkFileManager */
         ChunkFileManager.getInstance().reset();
 
-        /* Remove any temporary files */
-        File tempFolder = Folder.TEMP.get();
-        recursiveDelete(tempFolder);
-        tempFolder.mkdirs();
-
         /* Set mode of FormManger */
         setMode(Mode.CREATE);
+        editedCreation = null;
         progressMessage.unbind();
         progressMessage.set("");
         progressState.unbind();
+        progress.unbind();
+        progress.set(-1);
+        renderJob = null;
 
         /* Clear data fields */
         setName("");
@@ -123,6 +145,7 @@ public class CreationProcessManager {
         setSearchText("");
         getImages().clear();
         setBackgroundMusic(Music.TRACK_NONE);
+        setEncodingProfile(EncodingProfile.STANDARD);
     }
 
     /**
@@ -134,15 +157,21 @@ public class CreationProcessManager {
         /* Reset CreationProcessManager */
         reset();
         setMode(Mode.EDIT);
+        editedCreation = creation;
 
-        /* Create temporary Chunk audio files */
+        /* Create temporary Chunk audio files, reusing the creation's stored chunk audio where it exists */
         ChunkFileManager chunkManager = ChunkFileManager.getInstance();
-        for (Chunk chunk : creation.getChunks()) {
+        CreationFileManager creationFileManager = CreationFileManager.getInstance();
+        List<ChunkFileBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < creation.getChunks().size(); i++) {
+            Chunk chunk = creation.getChunks().get(i);
             ChunkFileBuilder builder = chunkManager.getBuilder();
             builder.setText(chunk.getText());
             builder.setVoiceSynthesizer(chunk.getVoiceSynthesizer());
-            chunkManager.create(builder);
+            builder.setAudioSource(creationFileManager.getChunkAudioFile(creation, i));
+            builders.add(builder);
         }
+        chunkManager.createAll(builders); // Chunks without stored audio are synthesized together
 
         /* Setup CreationProcessManager fields */
         setSearchTerm(creation.getSearchTerm());
@@ -150,9 +179,10 @@ public class CreationProcessManager {
         setImages(FXCollections.observableArrayList(creation.getImages()));
         setName(creation.getName());
         setBackgroundMusic(creation.getBackgroundMusic());
+        setEncodingProfile(creation.getEncodingProfile());
 
-        /* Download images for the creation's search term */
-        ImageSearcher.Search(getSearchTerm(), 15);
+        /* Download the creation's images, which are not kept between sessions */
+        ImageFileManager.getInstance().downloadImages(creation.getImages());
     }
 
     /**
@@ -167,14 +197,27 @@ public class CreationProcessManager {
         builder.setSearchText(getSearchText());
         builder.setImages(getImages());
         builder.setBackgroundMusic(getBackgroundMusic());
-        builder.setEdit(getMode() == Mode.EDIT);
+        builder.setChunks(ChunkFileManager.getInstance().getItems());
+        builder.setEditedCreation(getMode() == Mode.EDIT ? editedCreation : null);
+        builder.setRenderMode(getRenderMode());
+        builder.setEncodingProfile(getEncodingProfile());
 
         /* Observe the progress of the builder */
         progressMessage.bind(builder.progressMessageProperty());
         progressState.bind(builder.stateProperty());
+        progress.bind(builder.progressProperty());
 
         /* Build the creation */
-        CreationFileManager.getInstance().create(builder);
+        renderJob = RenderScheduler.getInstance().submit(builder);
+    }
+
+    /**
+     * Cancels the {@link RenderJob} building the {@link Creation}, if it has not finished
+     */
+    public void cancelBuild() {
+        if (renderJob != null) {
+            RenderScheduler.getInstance().cancel(renderJob);
+        }
     }
 
     /* JavaFX Beans (getters, setters and properties) */
@@ -239,6 +282,26 @@ public class CreationProcessManager {
         return backgroundMusic;
     }
 
+    public CreationFileBuilder.RenderMode getRenderMode() {
+        return renderMode.get();
+    }
+    public void setRenderMode(CreationFileBuilder.RenderMode renderMode) {
+        this.renderMode.set(renderMode);
+    }
+    public ObjectProperty<CreationFileBuilder.RenderMode> renderModeProperty() {
+        return renderMode;
+    }
+
+    public EncodingProfile getEncodingProfile() {
+        return encodingProfile.get();
+    }
+    public void setEncodingProfile(EncodingProfile encodingProfile) {
+        this.encodingProfile.set(encodingProfile);
+    }
+    public ObjectProperty<EncodingProfile> encodingProfileProperty() {
+        return encodingProfile;
+    }
+
     public String getProgressMessage() {
         return progressMessage.get();
     }
@@ -249,28 +312,17 @@ public class CreationProcessManager {
         return progressMessage.getReadOnlyProperty();
     }
 
+    public double getProgress() {
+        return progress.get();
+    }
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
     public CreationFileBuilder.ProgressState getProgressState() {
         return progressState.get();
     }
     public ReadOnlyObjectProperty<CreationFileBuilder.ProgressState> progressStateProperty() {
         return progressState.getReadOnlyProperty();
     }
-
-    /**
-     * Helper method to recursively delete a directory
-     * @param directory The directory to delete
-     * @return True if the deletion succeeded
-     */
-    private boolean recursiveDelete(File directory) {
-        if (directory.isDirectory()) {
-            File[] children = directory.listFiles();
-            for (File child: children) {
-                boolean status = recursiveDelete(child);
-                if (!status) {
-                    return false;
-                }
-            }
-        }
-        return directory.delete();
-    }
-}
+}
\ No newline at end of file
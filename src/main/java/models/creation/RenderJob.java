@@ -0,0 +1,116 @@
+package models.creation;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+
+/**
+ * RenderJob represents a {@link CreationFileBuilder} submitted to the {@link RenderScheduler}. It exposes the state,
+ * progress, failure and priority of the build.
+ * @author Tait & Alex
+ */
+public class RenderJob {
+    /**
+     * The builder this job renders
+     */
+    private final CreationFileBuilder builder;
+
+    /**
+     * The order this job was submitted in, used to break ties between jobs of equal priority
+     */
+    private final long sequence;
+
+    /**
+     * The priority of this job. Queued jobs with a higher priority are started first
+     */
+    private ReadOnlyIntegerWrapper priority = new ReadOnlyIntegerWrapper();
+
+    /**
+     * Package-private constructor called by {@link RenderScheduler}
+     * @param builder The builder to render
+     * @param priority The priority of the job
+     * @param sequence The order the job was submitted in
+     */
+    RenderJob(CreationFileBuilder builder, int priority, long sequence) {
+        this.builder = builder;
+        this.sequence = sequence;
+        setPriority(priority);
+    }
+
+    /**
+     * Get the name of the creation this job renders
+     * @return The name of the creation
+     */
+    public String getName() {
+        return builder.getName();
+    }
+
+    /**
+     * Check whether this job has succeeded, failed or been cancelled
+     * @return True if the job has finished
+     */
+    public boolean isFinished() {
+        CreationFileBuilder.ProgressState state = getState();
+        return state == CreationFileBuilder.ProgressState.SUCCEEDED ||
+                state == CreationFileBuilder.ProgressState.FAILED ||
+                state == CreationFileBuilder.ProgressState.CANCELLED;
+    }
+
+    /**
+     * Get the builder this job renders. Package-private, used by {@link RenderScheduler}
+     * @return The builder
+     */
+    CreationFileBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Get the order this job was submitted in. Package-private, used by {@link RenderScheduler}
+     * @return The submission order
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /* JavaFX Beans (getters, setters and properties) */
+
+    public int getPriority() {
+        return priority.get();
+    }
+    void setPriority(int priority) {
+        this.priority.set(priority);
+    }
+    public ReadOnlyIntegerProperty priorityProperty() {
+        return priority.getReadOnlyProperty();
+    }
+
+    public CreationFileBuilder.ProgressState getState() {
+        return builder.getState();
+    }
+    public ReadOnlyObjectProperty<CreationFileBuilder.ProgressState> stateProperty() {
+        return builder.stateProperty();
+    }
+
+    public double getProgress() {
+        return builder.getProgress();
+    }
+    public ReadOnlyDoubleProperty progressProperty() {
+        return builder.progressProperty();
+    }
+
+    public String getProgressMessage() {
+        return builder.getProgressMessage();
+    }
+    public ReadOnlyStringProperty progressMessageProperty() {
+        return builder.progressMessageProperty();
+    }
+
+    public Throwable getFailure() {
+        return builder.getFailure();
+    }
+    public ReadOnlyObjectProperty<Throwable> failureProperty() {
+        return builder.failureProperty();
+    }
+}
@@ -0,0 +1,224 @@
+package models.creation;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * RenderScheduler is a singleton that queues {@link CreationFileBuilder}'s as {@link RenderJob}'s and builds them,
+ * running a bounded number of jobs at once. Queued jobs are started in order of priority, then submission. Jobs may be
+ * reprioritised while queued, and cancelled at any time.
+ * @author Tait & Alex
+ */
+public class RenderScheduler {
+    /**
+     * The default priority of a submitted job
+     */
+    public static final int NORMAL_PRIORITY = 0;
+
+    /**
+     * The priority of background work, such as upgrading drafts, which should not delay creations being made
+     */
+    public static final int BACKGROUND_PRIORITY = -10;
+
+    /**
+     * The singleton instance
+     */
+    private static RenderScheduler instance;
+
+    /**
+     * Every job submitted to the scheduler, including finished jobs until {@code clearFinished()} is called. It is
+     * observed by the UI, so it is only changed on the FX thread
+     */
+    private final ObservableList<RenderJob> jobs = FXCollections.observableArrayList();
+
+    /**
+     * Runs the changes to {@code jobs}, on the FX thread outside of tests
+     */
+    private final Executor jobsExecutor;
+
+    /**
+     * Jobs waiting for a free render slot, highest priority first
+     */
+    private final PriorityQueue<RenderJob> queue = new PriorityQueue<>((a, b) -> {
+        if (a.getPriority() != b.getPriority()) {
+            return Integer.compare(b.getPriority(), a.getPriority());
+        }
+        return Long.compare(a.getSequence(), b.getSequence());
+    });
+
+    /**
+     * Jobs that are currently rendering
+     */
+    private final Set<RenderJob> running = new HashSet<>();
+
+    /**
+     * The maximum number of jobs that may render at the same time. Each FFmpeg encode is itself multi-threaded, so
+     * this is bounded to half of the available cores
+     */
+    private int maxConcurrentRenders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * The submission order of the next job
+     */
+    private long nextSequence;
+
+    /**
+     * Private constructor for singleton, which changes the jobs list on the FX thread
+     */
+    private RenderScheduler() {
+        this(RenderScheduler::runOnFxThread);
+    }
+
+    /**
+     * Package-private constructor used by tests, which run without the FX thread
+     * @param jobsExecutor Runs the changes to the jobs list
+     */
+    RenderScheduler(Executor jobsExecutor) {
+        this.jobsExecutor = jobsExecutor;
+    }
+
+    /**
+     * Get the singleton instance
+     * @return The singleton instance
+     */
+    public static RenderScheduler getInstance() {
+        if (instance == null) {
+            synchronized (RenderScheduler.class) {
+                if (instance == null) {
+                    instance = new RenderScheduler();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Submit a builder with normal priority
+     * @param builder The builder to render
+     * @return The job rendering the builder
+     */
+    public RenderJob submit(CreationFileBuilder builder) {
+        return submit(builder, NORMAL_PRIORITY);
+    }
+
+    /**
+     * Submit a builder to be rendered once a render slot is free
+     * @param builder The builder to render
+     * @param priority The priority of the job. Higher priority jobs are started first
+     * @return The job rendering the builder
+     */
+    public synchronized RenderJob submit(CreationFileBuilder builder, int priority) {
+        RenderJob job = new RenderJob(builder, priority, nextSequence++);
+        builder.setQueued();
+        jobsExecutor.execute(() -> jobs.add(job));
+        queue.add(job);
+        startQueuedJobs();
+        return job;
+    }
+
+    /**
+     * Cancel a job. A queued job is removed from the queue, and a running job has its process killed. The job's
+     * temporary files and partially built creation folder are removed.
+     * @param job The job to cancel
+     */
+    public synchronized void cancel(RenderJob job) {
+        if (job.isFinished()) {
+            return;
+        }
+        boolean queued = queue.remove(job);
+        job.getBuilder().cancel();
+        if (queued) {
+            CreationFileManager.getInstance().cleanUp(job.getBuilder());
+        }
+    }
+
+    /**
+     * Change the priority of a job. This only affects when a queued job starts
+     * @param job The job to reprioritise
+     * @param priority The new priority of the job
+     */
+    public synchronized void setPriority(RenderJob job, int priority) {
+        boolean queued = queue.remove(job);
+        job.setPriority(priority);
+        if (queued) {
+            queue.add(job);
+        }
+    }
+
+    /**
+     * Get the jobs submitted to the scheduler
+     * @return An unmodifiable observable list of the jobs
+     */
+    public ObservableList<RenderJob> getJobs() {
+        return FXCollections.unmodifiableObservableList(jobs);
+    }
+
+    /**
+     * Remove finished jobs from {@code getJobs()}
+     */
+    public void clearFinished() {
+        jobsExecutor.execute(() -> jobs.removeIf(RenderJob::isFinished));
+    }
+
+    /**
+     * Set the maximum number of jobs that may render at the same time
+     * @param maxConcurrentRenders The maximum number of concurrent renders, at least 1
+     */
+    public synchronized void setMaxConcurrentRenders(int maxConcurrentRenders) {
+        this.maxConcurrentRenders = Math.max(1, maxConcurrentRenders);
+        startQueuedJobs();
+    }
+
+    /**
+     * Start queued jobs until the queue is empty or {@code maxConcurrentRenders} jobs are running
+     */
+    private synchronized void startQueuedJobs() {
+        while (running.size() < maxConcurrentRenders && !queue.isEmpty()) {
+            RenderJob job = queue.remove();
+            running.add(job);
+
+            job.stateProperty().addListener(new ChangeListener<CreationFileBuilder.ProgressState>() {
+                @Override
+                public void changed(ObservableValue<? extends CreationFileBuilder.ProgressState> observable,
+                                    CreationFileBuilder.ProgressState oldValue,
+                                    CreationFileBuilder.ProgressState newValue) {
+                    if (job.isFinished()) {
+                        job.stateProperty().removeListener(this);
+                        finishJob(job);
+                    }
+                }
+            });
+            job.getBuilder().build(CreationFileManager.getInstance());
+        }
+    }
+
+    /**
+     * Release the render slot of a finished job, remove its files, then start the next queued job
+     * @param job The job that has finished
+     */
+    private synchronized void finishJob(RenderJob job) {
+        running.remove(job);
+        CreationFileManager.getInstance().cleanUp(job.getBuilder());
+        startQueuedJobs();
+    }
+
+    /**
+     * Run a change on the FX thread, as the jobs list is observed by the UI and jobs may be submitted from other threads
+     * @param change The change to run
+     */
+    private static void runOnFxThread(Runnable change) {
+        if (Platform.isFxApplicationThread()) {
+            change.run();
+        } else {
+            Platform.runLater(change);
+        }
+    }
+}
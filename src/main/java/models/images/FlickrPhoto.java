@@ -0,0 +1,57 @@
+package models.images;
+
+import java.net.URL;
+
+/**
+ * FlickrPhoto is a photo found by a Flickr search, as described by the {@code photo} element of the response
+ * @author Tait & Alex
+ */
+public class FlickrPhoto {
+    private final String id;
+    private final String owner;
+    private final URL url;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param id The id of the photo
+     * @param owner The id of the user who owns the photo
+     * @param url The URL of the medium size of the photo
+     * @param width The width of the medium size, or 0 if it is not known
+     * @param height The height of the medium size, or 0 if it is not known
+     */
+    public FlickrPhoto(String id, String owner, URL url, int width, int height) {
+        this.id = id;
+        this.owner = owner;
+        this.url = url;
+        this.width = width;
+        this.height = height;
+    }
+
+    /* Getters */
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s by %s (%dx%d) %s", id, owner, width, height, url);
+    }
+}
@@ -1,23 +1,25 @@
 package models.images;
 
 import constants.Folder;
-import main.ProcessRunner;
+import main.ThreadPool;
 import models.CallbackFileBuilder;
 import models.FileManager;
+import models.HttpService;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.concurrent.Executors;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * ImageFileBuilder implements {@link CallbackFileBuilder} for {@link ImageFileManager}. {@code build()} downloads
- * the given image, crops it, and saves it to the filesystem
+ * the given image, scales and crops it to the size of a creation's video with {@link ImageScaler}, and saves it to the
+ * filesystem. Builders are run by {@link ImageFileManager#download(URL)}, which runs one at a time for each image
  * @author Tait & Alex
  */
 public class ImageFileBuilder implements CallbackFileBuilder<URL> {
@@ -46,13 +48,9 @@ public class ImageFileBuilder implements CallbackFileBuilder<URL> {
         return this;
     }
 
-    /* Downloads an image and crops it */
+    /* Downloads an image, and scales and crops it on ThreadPool.CPU */
     @Override
     public void build(FileManager<URL> caller) {
-        if (ImageFileManager.getInstance().getItems().contains(image)) {
-            return;
-        }
-
         /* Get the filename from the URL */
         if (image == null) {
             return;
@@ -63,20 +61,26 @@ public class ImageFileBuilder implements CallbackFileBuilder<URL> {
             imageFile = new File(Folder.IMAGES.get(), matcher.group(1));
         }
 
-        try (InputStream in = image.openStream()) {
-            /* Download the image */
-            if (!imageFile.exists()) {
-                Files.copy(in, Paths.get(imageFile.getPath()));
-            }
+        if (!imageFile.exists()) {
+            try {
+                /* Download the image into memory, through the shared HTTP client */
+                byte[] imageData = HttpService.getInstance().getBytes(image);
 
-            /* Crop the image */
-            String command = String.format(
-                    "ffmpeg -i %s -filter \"scale=1280:720:force_original_aspect_ratio=increase,crop=1280:720\" %s -y",
-                    imageFile.getPath(), imageFile.getPath());
-            ProcessRunner crop = new ProcessRunner(command);
-            Executors.newSingleThreadExecutor().submit(crop);
-        } catch (IOException e) {
-            return;
+                /* Scale and crop the image on ThreadPool.CPU, writing it beside its final name and moving it into
+                 * place, so it is never read while being written */
+                File partFile = new File(imageFile.getParentFile(), "." + imageFile.getName());
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        ImageScaler.scaleAndCrop(imageData, partFile);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, ThreadPool.CPU.getExecutor()).join();
+                Files.move(partFile.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | CompletionException e) {
+                return;
+            }
         }
 
         /* Save image to ImageFileManager */
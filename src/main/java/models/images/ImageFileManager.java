@@ -1,30 +1,53 @@
 package models.images;
 
 import constants.Folder;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
+import main.ThreadPool;
 import models.FileManager;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ImageFileManager is a singleton {@link FileManager} for images of type {@link URL}. It manages downloading, caching
- * and removal of image files.
+ * and removal of image files. Each image has at most one download in flight, whose future every caller shares through
+ * {@link #download(URL)}, and the state of each download is tracked for the user interface.
  * @author Tait & Alex
  */
 public class ImageFileManager extends FileManager<URL> {
+    /**
+     * How far the download of an image has got
+     */
+    public enum DownloadState {
+        QUEUED,
+        DOWNLOADING,
+        READY,
+        FAILED
+    }
+
     /**
      * The singleton instance
      */
     private static ImageFileManager instance;
 
     /**
-     * A ThreadPool of 8 threads to download multiple images concurrently
+     * The download of each requested image, so an image is only downloaded once however many callers request it. These
+     * maps and {@code files} are keyed by the image's URL as text, as {@code URL.equals} and {@code URL.hashCode}
+     * resolve its host
      */
-    private ExecutorService downloadThreads = Executors.newFixedThreadPool(8);
+    private final Map<String, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+
+    /**
+     * The state of each requested image's download
+     */
+    private final Map<String, DownloadState> states = new ConcurrentHashMap<>();
 
     /**
      * Private constructor for singleton
@@ -48,47 +71,122 @@ public class ImageFileManager extends FileManager<URL> {
         return instance;
     }
 
+    /**
+     * Get a future of an image's file, starting its download on ThreadPool.NETWORK if it has not been requested. There is
+     * one download of each image at a time, which every caller shares, and a failed download is tried again when the
+     * image is next requested
+     * @param image The image to download
+     * @return The future of the image's file, which completes exceptionally if the image could not be downloaded
+     */
+    public CompletableFuture<File> download(URL image) {
+        if (image == null) {
+            CompletableFuture<File> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("No image to download"));
+            return failed;
+        }
+        return downloads.compute(image.toExternalForm(), (url, download) ->
+                download == null || download.isCompletedExceptionally() ? startDownload(image) : download);
+    }
+
+    /**
+     * Start downloading an image, tracking its state. Called by {@code download()} while it holds the image's entry
+     */
+    private CompletableFuture<File> startDownload(URL image) {
+        String key = image.toExternalForm();
+        File file = super.getFile(image);
+        if (file != null) { // Downloaded before the downloads were tracked, such as by an earlier download()
+            states.put(key, DownloadState.READY);
+            return CompletableFuture.completedFuture(file);
+        }
+
+        states.put(key, DownloadState.QUEUED);
+        CompletableFuture<File> download = CompletableFuture.supplyAsync(() -> {
+            states.put(key, DownloadState.DOWNLOADING);
+            create(getBuilder().setImage(image));
+            File imageFile = super.getFile(image);
+            if (imageFile == null) {
+                throw new CompletionException(new IOException("Could not download image: " + image));
+            }
+            return imageFile;
+        }, ThreadPool.NETWORK.getExecutor());
+        download.whenComplete((imageFile, e) -> states.put(key, e == null ? DownloadState.READY :
+                DownloadState.FAILED));
+        return download;
+    }
+
     /**
      * Downloads multiple images concurrently
      * @param images The images to download
+     * @return The future of the images' files, in the same order as the images, which completes exceptionally if any
+     * image could not be downloaded
      */
-    public void downloadImages(List<URL> images) {
+    public CompletableFuture<List<File>> downloadImages(List<URL> images) {
+        List<CompletableFuture<File>> futures = new ArrayList<>();
         for (URL image : images) {
-            Task<Void> downloader = new Task<Void>() {
-                @Override
-                protected Void call() {
-                    ImageFileBuilder builder = getBuilder();
-                    builder.setImage(image);
-                    create(builder);
-                    return null;
-                }
-            };
-            downloadThreads.submit(downloader);
+            futures.add(download(image)); // Downloading multiple images concurrently
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<File> imageFiles = new ArrayList<>();
+            for (CompletableFuture<File> future : futures) {
+                imageFiles.add(future.join());
+            }
+            return imageFiles;
+        });
+    }
+
+    /**
+     * Check how far the download of an image has got
+     * @param image The image
+     * @return The state of the image's download, or null if it has not been requested
+     */
+    public DownloadState getDownloadState(URL image) {
+        if (image == null) {
+            return null;
         }
+        String key = image.toExternalForm();
+        return files.containsKey(key) ? DownloadState.READY : states.get(key);
     }
 
     /**
      * Removes all downloaded image files
      */
     public void clearImages(){
+        downloads.clear();
+        states.clear();
+        files.clear();
+        items.clear();
         recursiveDelete(Folder.IMAGES.get());
         Folder.IMAGES.get().mkdirs();
     }
 
-    /* Override getFile() to download images if they do not exist */
+    /* Override getFile() to download images if they do not exist, waiting for the download. The JavaFX thread is never
+     * made to wait, so on it the download is started and null returned until the image is ready */
     @Override
     public File getFile(URL image) {
-        if (files.containsKey(image)) {
-            return super.getFile(image);
-        }
         if (image != null) {
-            ImageFileBuilder builder = getBuilder().setImage(image);
-            create(builder);
-            return getFile(image);
+            File file = super.getFile(image);
+            if (file != null) {
+                return file;
+            }
+            CompletableFuture<File> download = download(image);
+            if (Platform.isFxApplicationThread()) {
+                return download.getNow(null);
+            }
+            try {
+                return download.join();
+            } catch (CompletionException e) {
+                return null; // The image could not be downloaded
+            }
         }
         return null;
     }
 
+    /* Key image files by their URL as text, which does not resolve the URL's host */
+    @Override
+    protected Object getKey(URL image) {
+        return image.toExternalForm();
+    }
+
     /* Return an ImageFileBuilder */
     @Override
     public ImageFileBuilder getBuilder() {
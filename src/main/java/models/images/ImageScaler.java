@@ -0,0 +1,134 @@
+package models.images;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * ImageScaler scales and crops images to the resolution of a creation's video in memory, replacing an FFmpeg process
+ * per image. The part of the image with the target's aspect ratio is taken from its centre, and scaled to the target
+ * size in steps of at most half, so shrinking large photos keeps its detail rather than aliasing.
+ * @author Tait & Alex
+ */
+public class ImageScaler {
+    /**
+     * The width of the images of a creation
+     */
+    public static final int WIDTH = 1280;
+
+    /**
+     * The height of the images of a creation
+     */
+    public static final int HEIGHT = 720;
+
+    /**
+     * The quality images are saved as JPEGs with, from 0 to 1
+     */
+    private static final float JPEG_QUALITY = 0.92f;
+
+    static {
+        ImageIO.setUseCache(false); // Images are decoded in memory, rather than through temporary files
+    }
+
+    /**
+     * Private constructor, ImageScaler only has static methods
+     */
+    private ImageScaler() {}
+
+    /**
+     * Decode an image, scale and crop it to {@code WIDTH} x {@code HEIGHT}, and write it to a file
+     * @param imageData The encoded image, such as a downloaded JPEG
+     * @param imageFile The file to write, whose extension is the format to write it in
+     * @throws IOException If the image cannot be decoded, or the file cannot be written
+     */
+    public static void scaleAndCrop(byte[] imageData, File imageFile) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        if (image == null) {
+            throw new IOException("Not a readable image: " + imageFile.getName());
+        }
+        write(scaleAndCrop(image, WIDTH, HEIGHT), imageFile);
+    }
+
+    /**
+     * Scale an image to cover a size and crop it from its centre
+     * @param image The image
+     * @param width The width to scale and crop to
+     * @param height The height to scale and crop to
+     * @return The scaled and cropped image
+     */
+    public static BufferedImage scaleAndCrop(BufferedImage image, int width, int height) {
+        /* Crop the centre of the image to the target aspect ratio, before scaling so only the kept pixels are scaled */
+        int cropWidth = image.getWidth();
+        int cropHeight = (int) Math.round((double) cropWidth * height / width);
+        if (cropHeight > image.getHeight()) {
+            cropHeight = image.getHeight();
+            cropWidth = (int) Math.round((double) cropHeight * width / height);
+        }
+        BufferedImage scaled = image.getSubimage((image.getWidth() - cropWidth) / 2,
+                (image.getHeight() - cropHeight) / 2, cropWidth, cropHeight);
+
+        /* Halve the image until the last step is at most a half, as one interpolated step skips pixels when shrinking */
+        int stepWidth = cropWidth;
+        int stepHeight = cropHeight;
+        do {
+            stepWidth = stepWidth / 2 > width ? stepWidth / 2 : width;
+            stepHeight = stepHeight / 2 > height ? stepHeight / 2 : height;
+            scaled = draw(scaled, stepWidth, stepHeight);
+        } while (stepWidth != width || stepHeight != height);
+        return scaled;
+    }
+
+    /**
+     * Draw an image at a new size, as RGB so that it can be saved as a JPEG
+     */
+    private static BufferedImage draw(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Write an image in the format of its file's extension, JPEGs at {@code JPEG_QUALITY}
+     */
+    private static void write(BufferedImage image, File imageFile) throws IOException {
+        String name = imageFile.getName();
+        String format = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1).toLowerCase() : "jpg";
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(format);
+        if (!writers.hasNext()) { // Flickr URLs end in an image extension, but other sources may not
+            format = "jpg";
+            writers = ImageIO.getImageWritersBySuffix(format);
+        }
+        ImageWriter writer = writers.next();
+        imageFile.delete(); // Image output streams overwrite a file without truncating it
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(imageFile)) {
+            if (out == null) {
+                throw new IOException("Cannot write image: " + imageFile);
+            }
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format.equals("jpg") || format.equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -3,29 +3,31 @@ package models.images;
 import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
 import main.Keys;
+import main.ThreadPool;
+import models.HttpService;
 import models.creation.CreationProcessManager;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This class searches Flickr for images
  * @author Tait & Alex
  */
 public class ImageSearcher {
+    /**
+     * The number of images found by a search that are shown to the user
+     */
+    private static final int IMAGES_SHOWN = 10;
+
     /**
      * Search Flickr for images that match the given search term
      * @param searchTerm - Search for images that match this term
      * @param num - The number of images to search for
      */
     public static void Search(String searchTerm, int num) {
-        OkHttpClient client = new OkHttpClient();
         //Constructing the Flickr API call
         String url = "https://api.flickr.com/services/rest/?method=flickr.photos.search" +
                 "&api_key="+ Keys.getFlickrPublic()+
@@ -33,28 +35,40 @@ public class ImageSearcher {
                 "&per_page="+num +
                 "&sort=relevance"+
                 "&extras=url_m";
-        Request request = new Request.Builder().url(url).build();
 
-        ExecutorService thread = Executors.newSingleThreadExecutor();
-        //Creating an extra thread to parse the XML
-        Task<List<URL>> call = new Task<List<URL>>() {
+        //Creating an extra thread to parse the XML as it streams in, downloading the shown images as they are found
+        Task<List<FlickrPhoto>> call = new Task<List<FlickrPhoto>>() {
             @Override
-            protected List<URL> call() {
+            protected List<FlickrPhoto> call() {
                 try {
-                    Response response = client.newCall(request).execute();
-                    String XMLString = response.body().string();
                     XMLParser parser = new XMLParser();
-                    return parser.parse(XMLString);
+                    return HttpService.getInstance().get(url, body -> {
+                        List<FlickrPhoto> photos = new ArrayList<>();
+                        parser.parse(body.byteStream(), photo -> {
+                            if (photos.size() < IMAGES_SHOWN) {
+                                ImageFileManager.getInstance().download(photo.getUrl());
+                            }
+                            photos.add(photo);
+                        });
+                        return photos;
+                    });
                 } catch (IOException i) {
                     return null;
                 }
             }
         };
-        thread.submit(call);
+        ThreadPool.NETWORK.submit(call);
         call.setOnSucceeded(event -> {
-            List<URL> images = call.getValue();
+            List<FlickrPhoto> photos = call.getValue();
+            if (photos == null) {
+                return;
+            }
+            List<URL> images = new ArrayList<>();
+            for (FlickrPhoto photo : photos.subList(0, Math.min(IMAGES_SHOWN, photos.size()))) {
+                images.add(photo.getUrl());
+            }
 
-            CreationProcessManager.getInstance().setImages(FXCollections.observableArrayList(images.subList(0,10)));
+            CreationProcessManager.getInstance().setImages(FXCollections.observableArrayList(images));
 
             ImageFileManager.getInstance().downloadImages(CreationProcessManager.getInstance().getImages());
         });
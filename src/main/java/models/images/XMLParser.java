@@ -1,71 +1,124 @@
 package models.images;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * XMLParser is used to process the response XML from flickr and return the URLs and ID's of the images that are returned
+ * XMLParser is used to process the response XML from flickr and return the photos that are returned. The response is
+ * read as a stream with StAX, so each photo is given to the caller as soon as its element has been read, before the
+ * rest of the response has arrived, and however many photos are requested the parser only holds one at a time
  * @author Tait & Alex
  */
 class XMLParser {
-
     /**
-     * This is the main method used to retrieve the relevant information from the XML document. This information
-     * includes the URL of the image, and the image id.
-     * @param XMLString - this is the string returned from the HTTP request to Flickr
-     * @return - null if the response was blank, a HashMap with URL as the key and the id as the value otherwise
-     * @throws MalformedURLException - if the URL isn't valid
+     * The factory of stream readers, which is thread-safe once configured. Flickr responses have no DTD, so DTDs and
+     * external entities are not supported
      */
-    List<URL> parse(String XMLString) throws MalformedURLException {
-        List<URL> urlList = new ArrayList<>();
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
 
-        Document doc = convertToXML(XMLString); //Converting to parse-able XML
-        if (doc != null) {
-            //Traversing the XML document to get to the correct element
-            NodeList photos = doc.getElementsByTagName("photos");
-            Element photosElement = (Element) photos.item(0);
-            NodeList list = photosElement.getElementsByTagName("photo");
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
 
-            //Cycling through each photo item from the response
-            for (int i = 0; i < list.getLength(); i++) {
-                //Sometimes the URL field can be blank so we need to check for that
-                if (list.item(i).getAttributes().getNamedItem("url_m") != null) {
-                    String link = list.item(i).getAttributes().getNamedItem("url_m").getTextContent();
-                    URL url = new URL(link);
-                    urlList.add(url);
+    /**
+     * This is the main method used to retrieve the relevant information from the XML response. Each photo with a URL is
+     * given to {@code onPhoto} as it is read
+     * @param in - the body of the HTTP response from Flickr, which is read until the end of the response
+     * @param onPhoto - called with each photo, on the calling thread
+     * @return - the number of photos read
+     * @throws IOException - if the response could not be read, was not valid XML, or was an error from Flickr
+     */
+    int parse(InputStream in, Consumer<FlickrPhoto> onPhoto) throws IOException {
+        XMLStreamReader reader = null;
+        int count = 0;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if (element.equals("rsp") && "fail".equals(reader.getAttributeValue(null, "stat"))) {
+                    throw new IOException("Flickr search failed: " + readError(reader));
+                } else if (element.equals("photo")) {
+                    FlickrPhoto photo = readPhoto(reader);
+                    if (photo != null) {
+                        onPhoto.accept(photo);
+                        count++;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse the Flickr response", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
                 }
             }
-            return urlList;
         }
-        return null;
+        return count;
+    }
+
+    /**
+     * Read every photo from the XML response
+     * @param in - the body of the HTTP response from Flickr
+     * @return - the photos, in the order of the response
+     * @throws IOException - if the response could not be read, was not valid XML, or was an error from Flickr
+     */
+    List<FlickrPhoto> parse(InputStream in) throws IOException {
+        List<FlickrPhoto> photos = new ArrayList<>();
+        parse(in, photos::add);
+        return photos;
     }
 
     /**
-     * This method is used to convert a String XML object into a parse-able XML document
-     * @param XMLString - A String containing XML
-     * @return - if successful this will return a parse-able Document object
+     * Read the attributes of a photo element
+     * @param reader - a reader positioned at the start of the photo element
+     * @return - the photo, or null if it has no valid URL. Sometimes the URL field can be blank so we need to check
      */
-    private Document convertToXML(String XMLString) {
+    private FlickrPhoto readPhoto(XMLStreamReader reader) {
+        String link = reader.getAttributeValue(null, "url_m");
+        if (link == null || link.isEmpty()) {
+            return null;
+        }
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(new InputSource(new StringReader(XMLString)));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return new FlickrPhoto(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "owner"),
+                    URI.create(link).toURL(), parseSize(reader.getAttributeValue(null, "width_m")),
+                    parseSize(reader.getAttributeValue(null, "height_m")));
+        } catch (IllegalArgumentException | MalformedURLException e) { // Not a valid or absolute URL
             return null;
         }
     }
 
+    /**
+     * Read the message of an error response, such as {@code <err code="100" msg="Invalid API Key"/>}
+     */
+    private String readError(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("err")) {
+                return reader.getAttributeValue(null, "msg");
+            }
+        }
+        return "no error message";
+    }
+
+    private static int parseSize(String size) {
+        try {
+            return size == null ? 0 : Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 }
@@ -1,12 +1,15 @@
 package models.voice_synthesizer;
 
-import main.ProcessRunner;
+import main.ThreadPool;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.concurrent.Executors;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * EspeakVoiceSynthesizer implements the VoiceSynthesizer interface for Espeak
@@ -16,6 +19,11 @@ public final class EspeakVoiceSynthesizer implements VoiceSynthesizer {
     /* Required for Serialization */
     private static final long serialVersionUID = 2538014884103997513L;
 
+    /**
+     * The amplitude espeak saves speech with
+     */
+    private static final int AMPLITUDE = 200;
+
     /**
      * Voices supported by EspeakVoiceSynthesizer
      */
@@ -72,27 +80,62 @@ public final class EspeakVoiceSynthesizer implements VoiceSynthesizer {
         return voice;
     }
 
-    /* Preview synthesized text audibly */
+    /* Preview synthesized text audibly, streaming espeak's output with the amplitude used to save, so the previewed
+     * speech can be saved without running espeak again */
     @Override
-    public ProcessRunner preview(String text) {
-        ProcessRunner process = new ProcessRunner(String.format("espeak -v %s '%s'", voice.getCommand(), text));
-        Executors.newSingleThreadExecutor().submit(process);
-        return process;
+    public SpeechPreview preview(String text) {
+        SpeechPreview preview = new SpeechPreview(this, text, Arrays.asList("espeak", "--stdout",
+                "-a", Integer.toString(AMPLITUDE), "-v", voice.getCommand(), text));
+        ThreadPool.PROCESS.submit(preview);
+        return preview;
     }
 
-    /* Save synthesized text to a File */
+    /* Save synthesized text to a File, giving it to a warm espeak process on ThreadPool.PROCESS */
     @Override
-    public File save(String text, File folder) {
+    public CompletableFuture<File> save(String text, File folder) {
         File audioFile = new File(folder, "audio.wav");
+        WarmProcessPool pool = VoiceSynthesizerRegistry.getInstance().getWarmProcessPool();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                pool.run(getCacheKey(), this::getSaveCommand, text, audioFile, "synthesizeSpeech");
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            }
+            return audioFile;
+        }, ThreadPool.PROCESS.getExecutor());
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder("espeak", "-w", audioFile.getPath(), "-a", "200",
-                "-v", voice.getCommand(), text);
-        try {
-            processBuilder.start();
-        } catch (IOException e) {
-            return null;
-        }
-        return audioFile;
+    /* Start espeak processes for this voice ahead of time */
+    @Override
+    public void warmUp() {
+        VoiceSynthesizerRegistry.getInstance().getWarmProcessPool().warmUp(getCacheKey(), this::getSaveCommand);
+    }
+
+    /**
+     * Get the espeak command that reads UTF-8 text from standard input and saves it as speech
+     * @param audioFile The file to save the speech to
+     * @return The command
+     */
+    private List<String> getSaveCommand(File audioFile) {
+        return Arrays.asList("espeak", "--stdin", "-b", "1", "-w", audioFile.getPath(),
+                "-a", Integer.toString(AMPLITUDE), "-v", voice.getCommand());
+    }
+
+    /* The saved audio depends on the voice and amplitude */
+    @Override
+    public String getCacheKey() {
+        return String.format("espeak:%s:a%d", voice.getCommand(), AMPLITUDE);
+    }
+
+    /* EspeakVoiceSynthesizers are equal if they use the same Voice */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EspeakVoiceSynthesizer && ((EspeakVoiceSynthesizer) o).voice == voice;
+    }
+
+    @Override
+    public int hashCode() {
+        return voice == null ? 0 : voice.hashCode();
     }
 
     /* Represent this EspeakVoiceSynthesizer by is Voice name */
@@ -0,0 +1,48 @@
+package models.voice_synthesizer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * EspeakVoiceSynthesizerProvider provides the voices of {@link EspeakVoiceSynthesizer} when espeak is installed
+ * @author Tait & Alex
+ */
+public class EspeakVoiceSynthesizerProvider implements VoiceSynthesizerProvider {
+
+    @Override
+    public String getName() {
+        return "espeak";
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return EnumSet.of(Capability.SPEECH, Capability.STREAMING_PREVIEW, Capability.WARM_PROCESSES);
+    }
+
+    /* Available if an espeak executable is on the PATH */
+    @Override
+    public boolean isAvailable() {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            if (new File(directory, "espeak").canExecute()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<VoiceSynthesizer> getVoices() {
+        List<VoiceSynthesizer> voices = new ArrayList<>();
+        for (EspeakVoiceSynthesizer.Voice voice : EspeakVoiceSynthesizer.Voice.values()) {
+            voices.add(new EspeakVoiceSynthesizer(voice));
+        }
+        return voices;
+    }
+}
@@ -0,0 +1,109 @@
+package models.voice_synthesizer;
+
+import javafx.concurrent.Task;
+import main.ThreadPool;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SilentVoiceSynthesizer is a stand-in engine that "speaks" text as silence, lasting about as long as espeak would
+ * take to say it. It needs no external program, so creations can be built and timed on machines without a speech
+ * engine. Its audio has the same format as espeak's, so its chunks can be mixed with espeak chunks.
+ * @author Tait & Alex
+ */
+public final class SilentVoiceSynthesizer implements VoiceSynthesizer {
+    /* Required for Serialization */
+    private static final long serialVersionUID = -4127436398125076117L;
+
+    /**
+     * The format of espeak's audio, 16 bit mono at 22050Hz
+     */
+    private static final AudioFormat FORMAT = new AudioFormat(22050, 16, 1, true, false);
+
+    /**
+     * The seconds of silence for each character of text, and the least silence for any text
+     */
+    private static final double SECONDS_PER_CHARACTER = 0.06;
+    private static final double MIN_SECONDS = 0.5;
+
+    /**
+     * Public default constructor, also required for Externalizable
+     */
+    public SilentVoiceSynthesizer() {}
+
+    /* Preview by succeeding once the text would have been said, scheduled rather than holding a thread meanwhile */
+    @Override
+    public Task<Void> preview(String text) {
+        Task<Void> preview = new Task<Void>() {
+            @Override
+            protected Void call() {
+                return null;
+            }
+        };
+        long millis = (long) (getSeconds(text) * 1000);
+        CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, ThreadPool.CPU.getExecutor()).execute(preview);
+        return preview;
+    }
+
+    /* Save silence to a File */
+    @Override
+    public CompletableFuture<File> save(String text, File folder) {
+        File audioFile = new File(folder, "audio.wav");
+        return CompletableFuture.supplyAsync(() -> {
+            long frames = (long) (getSeconds(text) * FORMAT.getFrameRate());
+            byte[] silence = new byte[(int) frames * FORMAT.getFrameSize()];
+            try {
+                AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(silence), FORMAT, frames),
+                        AudioFileFormat.Type.WAVE, audioFile);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return audioFile;
+        }, ThreadPool.DISK.getExecutor());
+    }
+
+    @Override
+    public String getCacheKey() {
+        return String.format("silent:%s", SECONDS_PER_CHARACTER);
+    }
+
+    private static double getSeconds(String text) {
+        return Math.max(MIN_SECONDS, text.trim().length() * SECONDS_PER_CHARACTER);
+    }
+
+    /* SilentVoiceSynthesizers are all equal */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SilentVoiceSynthesizer;
+    }
+
+    @Override
+    public int hashCode() {
+        return SilentVoiceSynthesizer.class.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Silent (stand-in)";
+    }
+
+    /* SilentVoiceSynthesizer has no fields to serialize */
+    @Override
+    public void writeExternal(ObjectOutput out) {
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) {
+    }
+}
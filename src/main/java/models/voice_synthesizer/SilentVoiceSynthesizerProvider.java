@@ -0,0 +1,34 @@
+package models.voice_synthesizer;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SilentVoiceSynthesizerProvider provides {@link SilentVoiceSynthesizer}, a stand-in engine for testing without a speech
+ * engine. It is only available when the {@code varpedia.silentSynthesizer} system property is {@code true}
+ * @author Tait & Alex
+ */
+public class SilentVoiceSynthesizerProvider implements VoiceSynthesizerProvider {
+
+    @Override
+    public String getName() {
+        return "silent";
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return EnumSet.noneOf(Capability.class);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Boolean.getBoolean("varpedia.silentSynthesizer");
+    }
+
+    @Override
+    public List<VoiceSynthesizer> getVoices() {
+        return Collections.singletonList(new SilentVoiceSynthesizer());
+    }
+}
@@ -0,0 +1,226 @@
+package models.voice_synthesizer;
+
+import constants.Folder;
+import javafx.concurrent.Task;
+import main.ProcessMonitor;
+import main.ProcessRunner;
+import main.RingBuffer;
+import main.ThreadPool;
+import models.cache.SpeechCache;
+import models.chunk.ChunkSentences;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SpeechPreview plays speech as it is synthesized. The synthesizer writes a WAV stream to its standard output, which is
+ * played through a {@link SourceDataLine} from the first buffer, so playback starts at once however long the text is.
+ * The stream is read as fast as the synthesizer writes it and kept, and once the synthesizer has finished it is stored
+ * in {@link SpeechCache}, so saving the previewed text as a chunk does not synthesize it again. Text long enough to be
+ * saved as {@link ChunkSentences} is not stored, as its saved speech is its pieces joined with pauses rather than the
+ * whole text spoken at once. The synthesizer is measured by a {@link ProcessMonitor} like every other process, and its
+ * error stream is kept so a failed preview reports why. Cancelling stops playback immediately.
+ * @author Tait & Alex
+ */
+public class SpeechPreview extends Task<Void> {
+    /**
+     * The size of each buffer read from the synthesizer and written to the audio line
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Marks the end of the stream in the queue of buffers
+     */
+    private static final byte[] END = new byte[0];
+
+    /**
+     * The number of most recent bytes kept of the synthesizer's error stream, and the number of its last lines reported
+     * when it fails
+     */
+    private static final int ERROR_CAPACITY = 16 * 1024;
+    private static final int ERROR_LINES = 5;
+
+    /**
+     * How often the resources used by the synthesizer are sampled
+     */
+    private static final long SAMPLE_MILLIS = 100;
+
+    /**
+     * The stage previews are recorded under in {@link main.ProcessMetrics}
+     */
+    private static final String STAGE = "previewSpeech";
+
+    private final VoiceSynthesizer synthesizer;
+    private final String text;
+    private final List<String> command; // The synthesizer's program and arguments, writing a WAV stream to stdout
+    private final RingBuffer errors = new RingBuffer(ERROR_CAPACITY);
+    private volatile Process process;
+    private volatile SourceDataLine line;
+    private volatile int exitValue;
+
+    /**
+     * @param synthesizer The synthesizer the speech is cached for, whose saved audio must match the stream
+     * @param text The text being spoken
+     * @param command The program and arguments that write the speech as a WAV stream to standard output
+     */
+    public SpeechPreview(VoiceSynthesizer synthesizer, String text, List<String> command) {
+        this.synthesizer = synthesizer;
+        this.text = text;
+        this.command = new ArrayList<>(command);
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        ProcessMonitor monitor = new ProcessMonitor(command, STAGE);
+        Process process = new ProcessBuilder(command).start();
+        this.process = process;
+        process.getOutputStream().close(); // The text is passed as an argument
+        Thread errorReader = ThreadPool.startThread("SpeechPreview-stderr",
+                () -> ProcessRunner.drain(process.getErrorStream(), errors));
+
+        try {
+            monitor.sample(process);
+            AudioInputStream speech;
+            try {
+                speech = AudioSystem.getAudioInputStream(new BufferedInputStream(process.getInputStream()));
+            } catch (UnsupportedAudioFileException | IOException e) { // The synthesizer failed before any speech
+                exitValue = process.waitFor();
+                errorReader.join();
+                monitor.finish(isCancelled() ? -1 : exitValue);
+                throw failure();
+            }
+            AudioFormat format = speech.getFormat();
+
+            /* Read the whole stream on its own thread, so the synthesizer is never held back by playback */
+            BlockingQueue<byte[]> buffers = new LinkedBlockingQueue<>();
+            Thread reader = ThreadPool.startThread("SpeechPreview-reader",
+                    () -> readSpeech(speech, format, buffers, monitor));
+
+            SourceDataLine line = AudioSystem.getSourceDataLine(format);
+            this.line = line;
+            line.open(format);
+            line.start();
+            try {
+                byte[] buffer;
+                while (!isCancelled() && (buffer = buffers.take()) != END) {
+                    line.write(buffer, 0, buffer.length);
+                }
+                if (!isCancelled()) {
+                    line.drain(); // Letting the last buffer finish playing
+                }
+            } finally {
+                line.close();
+            }
+
+            reader.join(); // The synthesizer has exited once all of its speech has been read
+            errorReader.join();
+            if (!isCancelled() && exitValue != 0) {
+                throw failure();
+            }
+        } finally {
+            if (isCancelled()) {
+                process.destroyForcibly();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the speech into buffers for playback, keeping a copy that is cached once the synthesizer has finished, and
+     * sampling the synthesizer's resources as it runs
+     * @param speech The speech stream of the synthesizer
+     * @param format The format of the speech
+     * @param buffers The queue of buffers to play, which ends with {@code END}
+     * @param monitor The monitor of the synthesizer, which is finished once the synthesizer exits
+     */
+    private void readSpeech(InputStream speech, AudioFormat format, BlockingQueue<byte[]> buffers,
+                            ProcessMonitor monitor) {
+        Process process = this.process;
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        boolean complete = false;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long sampled = System.nanoTime();
+            int read;
+            while ((read = speech.read(buffer)) != -1) {
+                pcm.write(buffer, 0, read);
+                buffers.add(Arrays.copyOf(buffer, read));
+                if (System.nanoTime() - sampled > TimeUnit.MILLISECONDS.toNanos(SAMPLE_MILLIS)) {
+                    monitor.sample(process);
+                    sampled = System.nanoTime();
+                }
+            }
+            complete = true;
+        } catch (IOException ignored) { // The synthesizer was stopped, so the speech is incomplete
+        } finally {
+            buffers.add(END);
+        }
+
+        try {
+            exitValue = process.waitFor();
+        } catch (InterruptedException e) {
+            return;
+        }
+        monitor.finish(isCancelled() ? -1 : exitValue);
+        if (complete && exitValue == 0 && !isCancelled() && !new ChunkSentences(text).isSplit()) {
+            cacheSpeech(format, pcm.toByteArray());
+        }
+    }
+
+    /**
+     * Describe the failure of the synthesizer by its command and the end of its error stream
+     */
+    private IOException failure() {
+        return new IOException(String.format("Failed command (exit %d): %s\n%s", exitValue, String.join(" ", command),
+                errors.getLastLines(ERROR_LINES)));
+    }
+
+    /**
+     * Store complete speech in {@link SpeechCache} as a WAV file
+     */
+    private void cacheSpeech(AudioFormat format, byte[] pcm) {
+        File wavFile = null;
+        try {
+            wavFile = File.createTempFile("preview", ".wav", Folder.TEMP.get());
+            AudioInputStream audio = new AudioInputStream(new ByteArrayInputStream(pcm), format,
+                    pcm.length / format.getFrameSize());
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, wavFile);
+            SpeechCache.getInstance().put(synthesizer, text, wavFile);
+        } catch (IOException ignored) { // The speech is synthesized again when saved
+        } finally {
+            if (wavFile != null) {
+                wavFile.delete(); // The cache keeps its own copy of the file
+            }
+        }
+    }
+
+    @Override
+    protected void cancelled() {
+        SourceDataLine line = this.line;
+        if (line != null) { // Stopping playback at once, discarding buffered audio
+            line.stop();
+            line.flush();
+            line.close();
+        }
+        Process process = this.process;
+        if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+}
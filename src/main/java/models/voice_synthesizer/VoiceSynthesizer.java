@@ -1,9 +1,19 @@
 package models.voice_synthesizer;
 
-import main.ProcessRunner;
+import javafx.concurrent.Task;
+import main.ThreadPool;
 
 import java.io.Externalizable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * VoiceSynthesizer specifies an interface for concrete VoiceSynthesizer's to implement. VoiceSynthesizer extends
@@ -13,18 +23,70 @@ import java.io.File;
 public interface VoiceSynthesizer extends Externalizable {
 
     /**
-     * Audibly plays the specified text as speech
+     * Audibly plays the specified text as speech, in the background
      * @param text The text to be spoken
+     * @return The running preview, which stops playing when cancelled
      */
-    ProcessRunner preview(String text);
+    Task<Void> preview(String text);
 
     /**
-     * Saves the specified text as speech to the specified audio file
+     * Saves the specified text as speech to the specified audio file. The speech is synthesized in the background, so
+     * the file must not be read until the returned future completes
      * @param text The text to be saved
      * @param folder The folder to save audio.wav to
-     * @return The saved audio File
+     * @return A future of the saved audio File, which completes exceptionally if the speech could not be synthesized
      */
-    File save(String text, File folder);
+    CompletableFuture<File> save(String text, File folder);
+
+    /**
+     * Saves several texts as speech, each to its own folder. The texts are synthesized concurrently, bounded by the
+     * pool that {@link #save(String, File)} runs on, and a text that appears more than once is synthesized once and
+     * copied to the other folders
+     * @param texts The texts to be saved
+     * @param folders The folder to save each text's audio.wav to, in the same order as the texts
+     * @return A future of each saved audio File, in the same order as the texts
+     */
+    default List<CompletableFuture<File>> saveAll(List<String> texts, List<File> folders) {
+        if (texts.size() != folders.size()) {
+            throw new IllegalArgumentException("Every text needs a folder");
+        }
+        Map<String, CompletableFuture<File>> synthesized = new HashMap<>();
+        List<CompletableFuture<File>> results = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            CompletableFuture<File> original = synthesized.get(texts.get(i));
+            if (original == null) {
+                CompletableFuture<File> audio = save(texts.get(i), folders.get(i));
+                synthesized.put(texts.get(i), audio);
+                results.add(audio);
+            } else {
+                File copy = new File(folders.get(i), "audio.wav");
+                results.add(original.thenApplyAsync(audioFile -> {
+                    try {
+                        Files.copy(audioFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    return copy;
+                }, ThreadPool.DISK.getExecutor()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prepare to synthesize with this voice soon, such as by starting engine processes ahead of time. Called through
+     * {@link VoiceSynthesizerRegistry#warmUp(VoiceSynthesizer)} for engines with warm processes
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * Describe every setting that affects the audio this synthesizer saves, such as its program, voice and amplitude.
+     * Saved audio is cached by this description and the text, so two synthesizers with the same description must save
+     * the same audio for the same text
+     * @return The description of the synthesizer's settings
+     */
+    String getCacheKey();
 
     /* Require VoiceSynthesizers to specify a toString() method */
     @Override
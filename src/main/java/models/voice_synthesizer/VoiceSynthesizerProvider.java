@@ -0,0 +1,56 @@
+package models.voice_synthesizer;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * VoiceSynthesizerProvider is the service interface of a speech engine. Providers are discovered with
+ * {@link java.util.ServiceLoader} by {@link VoiceSynthesizerRegistry}, so an engine is added by implementing this
+ * interface and listing the implementation in {@code META-INF/services/models.voice_synthesizer.VoiceSynthesizerProvider}.
+ * Providers must have a public no-argument constructor.
+ * @author Tait & Alex
+ */
+public interface VoiceSynthesizerProvider {
+
+    /**
+     * Features an engine may support
+     */
+    enum Capability {
+        /**
+         * The engine speaks text aloud, rather than standing in for an engine
+         */
+        SPEECH,
+        /**
+         * Previews start playing before the whole text is synthesized
+         */
+        STREAMING_PREVIEW,
+        /**
+         * Engine processes can be started ahead of time and kept in a {@link WarmProcessPool}
+         */
+        WARM_PROCESSES
+    }
+
+    /**
+     * Get the name of the engine, such as "espeak"
+     * @return The name of the engine
+     */
+    String getName();
+
+    /**
+     * Get the features the engine supports
+     * @return The capabilities of the engine
+     */
+    Set<Capability> getCapabilities();
+
+    /**
+     * Check whether the engine can be used on this machine, such as whether its program is installed
+     * @return True if the engine is available
+     */
+    boolean isAvailable();
+
+    /**
+     * Get a synthesizer for each voice of the engine
+     * @return The voices of the engine
+     */
+    List<VoiceSynthesizer> getVoices();
+}
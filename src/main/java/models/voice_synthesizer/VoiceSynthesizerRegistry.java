@@ -0,0 +1,137 @@
+package models.voice_synthesizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * VoiceSynthesizerRegistry is responsible for finding the speech engines installed on this machine. Engines are
+ * {@link VoiceSynthesizerProvider}s discovered with {@link ServiceLoader}, and only those that report themselves
+ * available are used. The registry also owns the {@link WarmProcessPool} that engines with
+ * {@link VoiceSynthesizerProvider.Capability#WARM_PROCESSES} keep their processes in.
+ * @author Tait & Alex
+ */
+public class VoiceSynthesizerRegistry {
+    private volatile static VoiceSynthesizerRegistry instance;
+
+    private final List<VoiceSynthesizerProvider> providers = new ArrayList<>();
+    private final WarmProcessPool warmProcessPool = new WarmProcessPool();
+
+    /**
+     * Private constructor for singleton, loading the available providers. If no engine reports itself available, the
+     * engines that speak are used anyway, so their errors are reported when synthesizing rather than showing no voices
+     */
+    private VoiceSynthesizerRegistry() {
+        List<VoiceSynthesizerProvider> speechProviders = new ArrayList<>();
+        for (VoiceSynthesizerProvider provider : ServiceLoader.load(VoiceSynthesizerProvider.class)) {
+            if (provider.isAvailable()) {
+                providers.add(provider);
+            } else if (provider.getCapabilities().contains(VoiceSynthesizerProvider.Capability.SPEECH)) {
+                speechProviders.add(provider);
+            }
+        }
+        if (providers.isEmpty()) {
+            providers.addAll(speechProviders);
+        }
+    }
+
+    /**
+     * Get the singleton instance of VoiceSynthesizerRegistry
+     * @return The instance
+     */
+    public static VoiceSynthesizerRegistry getInstance() {
+        if (instance == null) {
+            synchronized (VoiceSynthesizerRegistry.class) {
+                if (instance == null) {
+                    instance = new VoiceSynthesizerRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the engines that can be used
+     * @return The available providers, in the order they were discovered
+     */
+    public List<VoiceSynthesizerProvider> getProviders() {
+        return Collections.unmodifiableList(providers);
+    }
+
+    /**
+     * Get every voice of every available engine, for the user to choose from
+     * @return The voices
+     */
+    public List<VoiceSynthesizer> getVoices() {
+        List<VoiceSynthesizer> voices = new ArrayList<>();
+        for (VoiceSynthesizerProvider provider : providers) {
+            voices.addAll(provider.getVoices());
+        }
+        return voices;
+    }
+
+    /**
+     * Find a voice by its name, ignoring case
+     * @param name The name of the voice, as given by its {@code toString()}
+     * @return The voice, or null if no available engine has it
+     */
+    public VoiceSynthesizer findVoice(String name) {
+        for (VoiceSynthesizer voice : getVoices()) {
+            if (voice.toString().equalsIgnoreCase(name)) {
+                return voice;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the engine that provides a voice
+     * @param synthesizer The voice
+     * @return The provider of the voice, or null if it is not provided by an available engine
+     */
+    public VoiceSynthesizerProvider getProvider(VoiceSynthesizer synthesizer) {
+        for (VoiceSynthesizerProvider provider : providers) {
+            if (provider.getVoices().contains(synthesizer)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the engine of a voice supports a feature
+     * @param synthesizer The voice
+     * @param capability The feature
+     * @return True if the voice's engine is available and supports the feature
+     */
+    public boolean hasCapability(VoiceSynthesizer synthesizer, VoiceSynthesizerProvider.Capability capability) {
+        VoiceSynthesizerProvider provider = getProvider(synthesizer);
+        return provider != null && provider.getCapabilities().contains(capability);
+    }
+
+    /**
+     * Start processes for a voice ahead of time, if its engine keeps warm processes, such as when the voice is chosen
+     * @param synthesizer The voice about to be used
+     */
+    public void warmUp(VoiceSynthesizer synthesizer) {
+        if (hasCapability(synthesizer, VoiceSynthesizerProvider.Capability.WARM_PROCESSES)) {
+            synthesizer.warmUp();
+        }
+    }
+
+    /**
+     * Get the pool that engines keep their warm processes in
+     * @return The warm process pool
+     */
+    public WarmProcessPool getWarmProcessPool() {
+        return warmProcessPool;
+    }
+
+    /**
+     * Kill the idle warm processes, when the application closes
+     */
+    public void shutdown() {
+        warmProcessPool.shutdown();
+    }
+}
@@ -0,0 +1,263 @@
+package models.voice_synthesizer;
+
+import constants.Folder;
+import main.ProcessMonitor;
+import main.ProcessRunner;
+import main.RingBuffer;
+import main.ThreadPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * WarmProcessPool keeps engine processes started ahead of time for each voice, so synthesis does not wait for a
+ * process to start and load its voice. Each process is started with its output file and waits for text on its standard
+ * input. When text is synthesized, an idle process is taken, given the text, and its output moved into place, and a
+ * replacement is started in the background. Command line engines such as espeak exit once their input ends, so each
+ * process synthesizes one text.
+ * @author Tait & Alex
+ */
+public class WarmProcessPool {
+    /**
+     * The number of idle processes kept for each voice
+     */
+    private static final int PROCESSES_PER_VOICE = 2;
+
+    /**
+     * The number of most recent bytes kept of each process's output, and the number of its last lines reported when it
+     * fails
+     */
+    private static final int ERROR_CAPACITY = 16 * 1024;
+    private static final int ERROR_LINES = 5;
+
+    /**
+     * How often the resources used by a process are sampled, starting at {@code FIRST_SAMPLE_MILLIS} and doubling up to
+     * {@code SAMPLE_MILLIS}, as most texts are synthesized long before the first full interval
+     */
+    private static final long FIRST_SAMPLE_MILLIS = 2;
+    private static final long SAMPLE_MILLIS = 100;
+
+    /**
+     * The folder processes write their output to before it is moved into place
+     */
+    private final File folder = new File(Folder.TEMP.get(), "warm");
+
+    private final Map<String, IdleProcesses> idle = new HashMap<>(); // The idle processes of each voice
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong warmRuns = new AtomicLong();
+    private final AtomicLong coldRuns = new AtomicLong();
+    private volatile boolean shutdown;
+
+    /**
+     * A started process waiting for its input
+     */
+    private static class WarmProcess {
+        private final Process process;
+        private final List<String> command;
+        private final File output;
+        private final RingBuffer errors; // The end of the process's messages, reported if it fails
+        private final Thread drain; // Reads the process's messages until it exits
+
+        private WarmProcess(Process process, List<String> command, File output, RingBuffer errors, Thread drain) {
+            this.process = process;
+            this.command = command;
+            this.output = output;
+            this.errors = errors;
+            this.drain = drain;
+        }
+    }
+
+    /**
+     * The idle processes of a voice. A slot is reserved before a process is started and released when it is taken, so
+     * concurrent warm ups never start more than {@code PROCESSES_PER_VOICE} processes between them
+     */
+    private static class IdleProcesses {
+        private final BlockingDeque<WarmProcess> processes = new LinkedBlockingDeque<>();
+        private final AtomicInteger slots = new AtomicInteger(); // The idle processes and those being started
+
+        /**
+         * Reserve a slot for a process about to be started
+         * @return True if a slot was reserved, false if the voice already has enough processes
+         */
+        private boolean reserve() {
+            return slots.getAndUpdate(count -> Math.min(count + 1, PROCESSES_PER_VOICE)) < PROCESSES_PER_VOICE;
+        }
+
+        private void release() {
+            slots.decrementAndGet();
+        }
+
+        /**
+         * Take an idle process, releasing its slot
+         * @return The process, or null if none is idle
+         */
+        private WarmProcess poll() {
+            WarmProcess warm = processes.poll();
+            if (warm != null) {
+                release();
+            }
+            return warm;
+        }
+    }
+
+    /**
+     * Package-private constructor used by {@link VoiceSynthesizerRegistry}
+     */
+    WarmProcessPool() {
+        folder.mkdirs();
+    }
+
+    /**
+     * Start idle processes for a voice until it has {@code PROCESSES_PER_VOICE}, in the background
+     * @param voice The key of the voice, such as {@link VoiceSynthesizer#getCacheKey()}
+     * @param command Creates the command of a process that reads text from standard input and writes the given file
+     */
+    public void warmUp(String voice, Function<File, List<String>> command) {
+        ThreadPool.PROCESS.submit(() -> {
+            IdleProcesses processes = getIdle(voice);
+            while (!shutdown && processes.reserve()) {
+                WarmProcess warm;
+                try {
+                    warm = start(command);
+                } catch (IOException e) { // The engine cannot be started, so synthesis will report the error
+                    processes.release();
+                    return;
+                }
+                processes.processes.add(warm);
+                if (shutdown) { // Started while the pool shut down, so it is killed with the others
+                    shutdown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Synthesize text with an idle process of the voice, or a new process if none is idle, blocking until it exits
+     * @param voice The key of the voice, such as {@link VoiceSynthesizer#getCacheKey()}
+     * @param command Creates the command of a process that reads text from standard input and writes the given file
+     * @param text The text to synthesize
+     * @param target The file to move the output to
+     * @param stage The stage the run is recorded under in {@link main.ProcessMetrics}
+     * @throws IOException If the process could not be started, failed, or wrote no output
+     * @throws InterruptedException If interrupted while waiting, which kills the process
+     */
+    public void run(String voice, Function<File, List<String>> command, String text, File target, String stage)
+            throws IOException, InterruptedException {
+        IdleProcesses processes = getIdle(voice);
+        WarmProcess warm = processes.poll();
+        while (warm != null && !warm.process.isAlive()) { // Discarding processes that exited while idle
+            discard(warm);
+            warm = processes.poll();
+        }
+        if (warm == null) {
+            coldRuns.incrementAndGet();
+            warm = start(command);
+        } else {
+            warmRuns.incrementAndGet();
+        }
+        warmUp(voice, command); // Replacing the process that was taken
+
+        ProcessMonitor monitor = new ProcessMonitor(warm.command, stage);
+        Process process = warm.process;
+        try {
+            try (OutputStream in = process.getOutputStream()) {
+                in.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            monitor.sample(process);
+            long sampleMillis = FIRST_SAMPLE_MILLIS;
+            while (!process.waitFor(sampleMillis, TimeUnit.MILLISECONDS)) {
+                monitor.sample(process);
+                sampleMillis = Math.min(sampleMillis * 2, SAMPLE_MILLIS);
+            }
+            monitor.finish(process.exitValue());
+            if (process.exitValue() != 0 || !warm.output.exists()) {
+                warm.drain.join(SAMPLE_MILLIS); // Letting the last messages be read
+                throw new IOException(String.format("Failed command (exit %d): %s\n%s", process.exitValue(),
+                        String.join(" ", warm.command), warm.errors.getLastLines(ERROR_LINES)));
+            }
+            Files.move(warm.output.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            discard(warm);
+        }
+    }
+
+    /**
+     * Kill every idle process. Processes already given text finish their work
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (idle) {
+            for (IdleProcesses processes : idle.values()) {
+                WarmProcess warm;
+                while ((warm = processes.poll()) != null) {
+                    discard(warm);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a process that waits for its input
+     */
+    private WarmProcess start(Function<File, List<String>> command) throws IOException {
+        File output = new File(folder, nextId.incrementAndGet() + ".wav");
+        List<String> arguments = new ArrayList<>(command.apply(output));
+        Process process = new ProcessBuilder(arguments).redirectErrorStream(true).start();
+
+        // The speech is written to a file, so the process's output is only its messages, drained so it cannot stall
+        RingBuffer errors = new RingBuffer(ERROR_CAPACITY);
+        Thread drain = ThreadPool.startThread("WarmProcessPool-output",
+                () -> ProcessRunner.drain(process.getInputStream(), errors));
+        return new WarmProcess(process, arguments, output, errors, drain);
+    }
+
+    /**
+     * Kill a process and delete its output once it has exited, as a process killed while starting may still create it
+     */
+    private static void discard(WarmProcess warm) {
+        warm.process.destroyForcibly();
+        warm.process.onExit().thenRun(warm.output::delete);
+    }
+
+    private IdleProcesses getIdle(String voice) {
+        synchronized (idle) {
+            return idle.computeIfAbsent(voice, key -> new IdleProcesses());
+        }
+    }
+
+    /**
+     * Get the number of texts synthesized by a process that was already started
+     * @return The number of warm runs
+     */
+    public long getWarmRuns() {
+        return warmRuns.get();
+    }
+
+    /**
+     * Get the number of texts synthesized by a process started on demand, as none was idle
+     * @return The number of cold runs
+     */
+    public long getColdRuns() {
+        return coldRuns.get();
+    }
+
+    /* Represent the pool by its statistics, such as "Warm processes: 40 warm runs, 2 cold runs" */
+    @Override
+    public String toString() {
+        return String.format("Warm processes: %d warm runs, %d cold runs", warmRuns.get(), coldRuns.get());
+    }
+}
@@ -1,5 +1,6 @@
 package views;
 
+import constants.EncodingProfile;
 import constants.View;
 import controllers.AdaptivePanel;
 import javafx.beans.value.ChangeListener;
@@ -7,8 +8,10 @@ import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
+import javafx.scene.control.MenuItem;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import models.creation.Creation;
@@ -87,8 +90,21 @@ public class CreationCell extends ListCell<Creation> {
                 confidenceRating.setText(Integer.toString(item.getConfidenceRating()));
             }
 
+            // Drafts can be rendered again at full quality in the background
+            if (item.getEncodingProfile() == EncodingProfile.DRAFT) {
+                MenuItem upgrade = new MenuItem("Render at " + EncodingProfile.STANDARD + " quality");
+                upgrade.setOnAction(event -> {
+                    CreationFileManager.getInstance().upgrade(item, EncodingProfile.STANDARD);
+                    upgrade.setDisable(true);
+                });
+                setContextMenu(new ContextMenu(upgrade));
+            } else {
+                setContextMenu(null);
+            }
+
             setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
         } else {
+            setContextMenu(null);
             setText(null);
             setContentDisplay(ContentDisplay.TEXT_ONLY);
         }
@@ -1,5 +1,6 @@
 package views;
 
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.image.Image;
@@ -64,15 +65,19 @@ public class ThumbnailCell extends DraggableCell<URL> {
     public void updateItem(URL item, boolean empty) {
         super.updateItem(item, empty);
 
-        // Load and display the image
+        // Load and display the image once it has downloaded, without waiting for it on the JavaFX thread
         ImageView thumbnailImage = new ImageView();
         if (item != null && !empty) {
-            Image image = new Image("file:"+ ImageFileManager.getInstance().getFile(item).getPath());
-            thumbnailImage.setImage(image);
             thumbnailImage.setPreserveRatio(true);
             thumbnailImage.setFitHeight(135);
             thumbnailImage.setFitWidth(240);
             setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            ImageFileManager.getInstance().download(item).thenAccept(file -> Platform.runLater(() -> {
+                // The cell may have been reused for another image meanwhile, compared as text not with URL.equals
+                if (getItem() != null && item.toExternalForm().equals(getItem().toExternalForm())) {
+                    thumbnailImage.setImage(new Image("file:" + file.getPath(), 240, 135, true, true, true));
+                }
+            }));
         }
 
         setText(null);
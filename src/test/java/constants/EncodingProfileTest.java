@@ -0,0 +1,36 @@
+package constants;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that each {@link EncodingProfile} gives FFmpeg its encoder settings, and that only the draft profile scales
+ * the video down
+ * @author Tait & Alex
+ */
+public class EncodingProfileTest {
+    @Test
+    public void encodesWithEachProfilesSettings() {
+        assertEquals(Arrays.asList("-c:v", "libx264", "-crf", "28", "-preset", "ultrafast"),
+                EncodingProfile.DRAFT.getVideoOptions());
+        assertEquals(Arrays.asList("-c:v", "libx264", "-crf", "19", "-preset", "slow"),
+                EncodingProfile.STANDARD.getVideoOptions());
+        assertEquals(Arrays.asList("-c:v", "libx264", "-crf", "16", "-preset", "veryslow"),
+                EncodingProfile.ARCHIVE.getVideoOptions());
+        assertEquals(Arrays.asList("-c:a", "libfdk_aac", "-b:a", "96k", "-ac", "2"),
+                EncodingProfile.DRAFT.getAudioOptions());
+        assertEquals(Arrays.asList("-c:a", "libfdk_aac", "-b:a", "320k", "-ac", "2"),
+                EncodingProfile.ARCHIVE.getAudioOptions());
+    }
+
+    @Test
+    public void scalesOnlyDraftsDown() {
+        assertEquals(",scale=-2:360", EncodingProfile.DRAFT.getScaleFilter());
+        assertTrue(EncodingProfile.STANDARD.getScaleFilter().isEmpty());
+        assertTrue(EncodingProfile.ARCHIVE.getScaleFilter().isEmpty());
+    }
+}
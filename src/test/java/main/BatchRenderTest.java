@@ -0,0 +1,63 @@
+package main;
+
+import constants.Music;
+import models.voice_synthesizer.EspeakVoiceSynthesizer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link BatchRender} reads the voices, music and images of a manifest by either of their names, and that
+ * it rejects entries it does not know
+ * @author Tait & Alex
+ */
+public class BatchRenderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parsesVoicesByEnumOrDisplayName() {
+        EspeakVoiceSynthesizer britishFemale = new EspeakVoiceSynthesizer(EspeakVoiceSynthesizer.Voice.BRITISH_F);
+
+        assertEquals(britishFemale, BatchRender.parseVoice("BRITISH_F"));
+        assertEquals(britishFemale, BatchRender.parseVoice("british_f"));
+        assertEquals(britishFemale, BatchRender.parseVoice("British Female"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVoices() {
+        BatchRender.parseVoice("Klingon");
+    }
+
+    @Test
+    public void parsesMusicByEnumOrGenre() {
+        assertEquals(Music.TRACK_TWO, BatchRender.parseMusic("TRACK_TWO"));
+        assertEquals(Music.TRACK_TWO, BatchRender.parseMusic("jazz"));
+        assertEquals(Music.TRACK_NONE, BatchRender.parseMusic("None"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownMusic() {
+        BatchRender.parseMusic("Polka");
+    }
+
+    @Test
+    public void parsesImagesAsUrlsOrLocalFiles() throws Exception {
+        File image = temporaryFolder.newFile("dog.jpg");
+
+        assertEquals(new URL("https://live.staticflickr.com/1/2_3.jpg"),
+                BatchRender.parseImage("https://live.staticflickr.com/1/2_3.jpg"));
+        assertEquals(image.toURI().toURL(), BatchRender.parseImage(image.getPath()));
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void rejectsMissingLocalImages() throws MalformedURLException {
+        BatchRender.parseImage(new File(temporaryFolder.getRoot(), "missing.jpg").getPath());
+    }
+}
@@ -0,0 +1,72 @@
+package main;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link ProcessMonitor} records every run in {@link ProcessMetrics} by stage, with the bytes the program
+ * read and wrote from {@code /proc}
+ * @author Tait & Alex
+ */
+public class ProcessMonitorTest {
+    @Before
+    public void clearMetrics() {
+        ProcessMetrics.getInstance().clear();
+    }
+
+    @Test
+    public void recordsRunsByStage() throws Exception {
+        new ProcessRunner("sh", "-c", "exit 0").setStage("testStage").call();
+        try {
+            new ProcessRunner("sh", "-c", "exit 3").setStage("testStage").call();
+            fail("The command should fail");
+        } catch (Exception ignored) {
+        }
+
+        List<ProcessStats> runs = ProcessMetrics.getInstance().getRuns("testStage");
+        assertEquals(2, runs.size());
+        assertEquals("sh", runs.get(1).getProgram());
+        assertEquals("sh -c exit 3", runs.get(1).getArguments());
+        assertEquals(3, runs.get(1).getExitValue());
+        assertTrue(ProcessMetrics.getInstance().getSummary(), ProcessMetrics.getInstance().getSummary()
+                .matches("(?s).*\\ntestStage +2 +1 .*"));
+    }
+
+    @Test
+    public void groupsRunsWithoutAStageByProgram() throws Exception {
+        new ProcessRunner("/bin/sh", "-c", "exit 0").call();
+
+        assertEquals(1, ProcessMetrics.getInstance().getRuns("sh").size());
+    }
+
+    @Test
+    public void countsBytesReadAndWritten() throws Exception {
+        // The shell is sampled while it sleeps, once it has added the counters of the finished head to its own
+        new ProcessRunner("sh", "-c", "head -c 2000000 /dev/zero > /dev/null; sleep 0.5").setStage("testIo").call();
+
+        ProcessStats stats = ProcessMetrics.getInstance().getRuns("testIo").get(0);
+        assertTrue(stats.toString(), stats.getBytesIn() >= 2000000);
+        assertTrue(stats.toString(), stats.getBytesOut() >= 2000000);
+        assertTrue(stats.toString(), stats.getPeakRss() > 0);
+    }
+
+    @Test
+    public void shortensLongCommandLines() {
+        String argument = String.join("", Collections.nCopies(300, "x"));
+
+        ProcessStats stats = new ProcessMonitor(Arrays.asList("echo", argument), "testLong").finish(0);
+
+        assertEquals(240, stats.getArguments().length());
+        assertTrue(stats.getArguments().startsWith("echo xxx"));
+        assertTrue(stats.getArguments().endsWith("..."));
+        assertEquals(Collections.singletonList(stats), ProcessMetrics.getInstance().getRuns("testLong"));
+    }
+}
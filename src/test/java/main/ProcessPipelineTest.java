@@ -0,0 +1,60 @@
+package main;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link ProcessPipeline} streams data between its commands, and that a failing command stops the whole
+ * pipeline rather than leaving the other commands waiting on it
+ * @author Tait & Alex
+ */
+public class ProcessPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void streamsOutputIntoTheNextCommand() throws Exception {
+        File output = new File(folder.getRoot(), "output.txt");
+
+        new ProcessPipeline()
+                .then("printf", "one\\ntwo\\nthree\\n")
+                .then("tr", "a-z", "A-Z")
+                .then("sh", "-c", "cat > \"$0\"", output.toString())
+                .call();
+
+        assertEquals("ONE\nTWO\nTHREE\n", new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void killsTheOtherCommandsWhenOneFails() throws Exception {
+        long start = System.nanoTime();
+        try {
+            new ProcessPipeline()
+                    .then("sh", "-c", "echo boom >&2; exit 3")
+                    .then("sleep", "30") // Never reads its input, so it only stops if it is killed
+                    .call();
+            fail("The pipeline should fail");
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Failed command (exit 3): sh -c"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("boom"));
+        }
+        assertTrue("The pipeline should stop without waiting for sleep", System.nanoTime() - start < 10e9);
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void failsIfACommandCannotBeStarted() throws Exception {
+        new ProcessPipeline()
+                .then("sleep", "30")
+                .then("/nonexistent/program")
+                .call();
+    }
+}
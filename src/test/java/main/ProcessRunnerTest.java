@@ -0,0 +1,85 @@
+package main;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link ProcessRunner} runs programs from their argument lists, drains their output, reports the end of
+ * their error stream when they fail, kills them once they time out, and parses FFmpeg progress
+ * @author Tait & Alex
+ */
+public class ProcessRunnerTest {
+
+    @Test
+    public void reportsTheLastErrorLinesOfAFailedCommand() throws Exception {
+        String script = "for i in 1 2 3 4 5 6 7; do echo line $i >&2; done; exit 4";
+        ProcessRunner runner = new ProcessRunner("sh", "-c", script);
+        try {
+            runner.call();
+            fail("The command should fail");
+        } catch (Exception e) {
+            assertEquals("Failed command (exit 4): sh -c " + script + "\nline 3\nline 4\nline 5\nline 6\nline 7",
+                    e.getMessage());
+        }
+        assertEquals(4, runner.getExitValue());
+    }
+
+    @Test
+    public void passesArgumentsWithoutAShell() throws Exception {
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "[ \"$0\" = 'a b; exit 1' ] || exit 2", "a b; exit 1");
+
+        runner.call();
+
+        assertEquals(0, runner.getExitValue());
+    }
+
+    @Test
+    public void drainsMoreOutputThanAPipeHolds() throws Exception {
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "head -c 1000000 /dev/zero; head -c 1000000 /dev/zero >&2")
+                .setTimeout(30, TimeUnit.SECONDS);
+
+        runner.call();
+
+        assertEquals(0, runner.getExitValue());
+    }
+
+    @Test
+    public void killsACommandThatTimesOut() throws Exception {
+        long start = System.nanoTime();
+        try {
+            new ProcessRunner("sleep", "30").setTimeout(200, TimeUnit.MILLISECONDS).call();
+            fail("The command should time out");
+        } catch (TimeoutException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Timed out after 200ms: sleep 30"));
+        }
+        assertTrue("The command should be killed", System.nanoTime() - start < 10e9);
+    }
+
+    @Test
+    public void readsFfmpegProgress() {
+        String output = "frame=1\nout_time_ms=N/A\nout_time_ms=1500000\nprogress=continue\nout_time_us=3000000\n" +
+                "progress=end\n";
+        List<Double> progress = new ArrayList<>();
+        RingBuffer copy = new RingBuffer(1024);
+
+        ProcessRunner.readProgress(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), 2,
+                (done, total) -> {
+                    assertEquals(2, total, 0);
+                    progress.add(done);
+                }, copy);
+
+        assertEquals(Arrays.asList(1.5, 2.0, 2.0), progress); // The time is never past the duration
+        assertEquals("progress=end", copy.getLastLines(1));
+    }
+}
@@ -0,0 +1,92 @@
+package main;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link RingBuffer} keeps the most recent output of a process, and extracts its last lines
+ * @author Tait & Alex
+ */
+public class RingBufferTest {
+
+    @Test
+    public void getsLastLines() {
+        RingBuffer buffer = buffer(1024, "first\nsecond\nthird\nfourth\n");
+
+        assertEquals("fourth", buffer.getLastLines(1));
+        assertEquals("third\nfourth", buffer.getLastLines(2));
+    }
+
+    @Test
+    public void getsEveryLineIfThereAreFewer() {
+        RingBuffer buffer = buffer(1024, "only\ntwo lines");
+
+        assertEquals("only\ntwo lines", buffer.getLastLines(5));
+    }
+
+    @Test
+    public void ignoresBlankLinesAtTheEnd() {
+        RingBuffer buffer = buffer(1024, "error: no such voice\n\n\n");
+
+        assertEquals("error: no such voice", buffer.getLastLines(1));
+    }
+
+    @Test
+    public void isEmptyBeforeAnyWrite() {
+        RingBuffer buffer = new RingBuffer(16);
+
+        assertEquals("", buffer.getLastLines(5));
+        assertEquals(0, buffer.getTotal());
+    }
+
+    @Test
+    public void getsNoLinesIfNoneAsked() {
+        assertEquals("", buffer(16, "some\noutput").getLastLines(0));
+    }
+
+    @Test
+    public void keepsMostRecentBytesAcrossWrites() {
+        RingBuffer buffer = new RingBuffer(16);
+        for (int i = 0; i < 10; i++) {
+            write(buffer, "line " + i + "\n"); // 7 bytes each, wrapping around the buffer
+        }
+
+        assertEquals("7\nline 8\nline 9\n", buffer.toString());
+        assertEquals("line 8\nline 9", buffer.getLastLines(2));
+        assertEquals(70, buffer.getTotal());
+    }
+
+    @Test
+    public void keepsEndOfWriteLargerThanBuffer() {
+        RingBuffer buffer = buffer(8, "0123456789\nabcdef");
+
+        assertEquals("9\nabcdef", buffer.toString());
+        assertEquals("abcdef", buffer.getLastLines(1));
+        assertEquals(17, buffer.getTotal());
+    }
+
+    @Test
+    public void writesPartOfArray() {
+        RingBuffer buffer = new RingBuffer(64);
+        byte[] bytes = "skip[kept]skip".getBytes(StandardCharsets.UTF_8);
+
+        buffer.write(bytes, 4, 6);
+
+        assertEquals("[kept]", buffer.toString());
+        assertEquals(6, buffer.getTotal());
+    }
+
+    private static RingBuffer buffer(int capacity, String text) {
+        RingBuffer buffer = new RingBuffer(capacity);
+        write(buffer, text);
+        return buffer;
+    }
+
+    private static void write(RingBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,129 @@
+package main;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that each {@link ThreadPool} runs tasks on its own daemon threads, and never runs more tasks at once than it
+ * has threads, and that only the pools of blocking work use virtual threads when they are enabled
+ * @author Tait & Alex
+ */
+public class ThreadPoolTest {
+    @Before
+    public void usePlatformThreads() {
+        ThreadPool.setVirtualThreads(false);
+    }
+
+    @After
+    public void restoreThreads() {
+        ThreadPool.setVirtualThreads(Boolean.parseBoolean(System.getProperty("varpedia.virtualThreads", "true")));
+    }
+
+    @Test
+    public void runsTasksOnNamedDaemonThreads() throws Exception {
+        Thread thread = ThreadPool.CPU.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+
+        assertTrue(thread.getName(), thread.getName().startsWith("cpu-"));
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    public void runsTasksThroughItsExecutor() throws Exception {
+        String name = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                ThreadPool.NETWORK.getExecutor()).get(10, TimeUnit.SECONDS);
+
+        assertTrue(name, name.startsWith("network-"));
+    }
+
+    @Test
+    public void queuesTasksBeyondItsThreads() throws Exception {
+        int threads = ThreadPool.DISK.getMaxThreads();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads + 2; i++) {
+            tasks.add(ThreadPool.DISK.submit(() -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+            }));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (running.get() < threads && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(threads, ThreadPool.DISK.getActiveCount());
+        assertTrue(ThreadPool.DISK.getQueueDepth() >= 2); // Other tests may have left deletions queued
+
+        release.countDown();
+        for (Future<?> task : tasks) {
+            task.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(threads, mostRunning.get());
+    }
+
+    @Test
+    public void onlyBlockingPoolsUseVirtualThreads() {
+        int processThreads = ThreadPool.PROCESS.getMaxThreads();
+
+        ThreadPool.setVirtualThreads(true);
+
+        assertFalse(ThreadPool.CPU.isVirtual());
+        assertFalse(ThreadPool.DISK.isVirtual());
+        assertTrue(ThreadPool.PROCESS.isVirtual());
+        assertTrue(ThreadPool.NETWORK.isVirtual());
+        assertTrue(ThreadPool.PROCESS.getMaxThreads() > processThreads);
+        assertTrue(ThreadPool.PROCESS.toString(), ThreadPool.PROCESS.toString().startsWith("process (virtual): "));
+    }
+
+    @Test
+    public void countsVirtualTasks() throws Exception {
+        ThreadPool.setVirtualThreads(true);
+        long completed = ThreadPool.PROCESS.getCompletedCount();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> task = ThreadPool.PROCESS.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(ThreadPool.PROCESS.getActiveCount() >= 1);
+        release.countDown();
+        task.get(10, TimeUnit.SECONDS);
+
+        assertTrue(ThreadPool.PROCESS.getCompletedCount() > completed);
+    }
+
+    @Test
+    public void startsNamedThreads() throws Exception {
+        ThreadPool.setVirtualThreads(true);
+        String[] name = new String[1];
+
+        Thread thread = ThreadPool.startThread("reader", () -> name[0] = Thread.currentThread().getName());
+        thread.join(10000);
+
+        assertEquals("reader", name[0]);
+    }
+}
@@ -0,0 +1,194 @@
+package models;
+
+import com.sun.net.httpserver.HttpServer;
+import main.ThreadPool;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link HttpService} reuses its connections, limits the requests running at once to a host, and reports
+ * unsuccessful responses, and that it replaces the caching servers ask for with the time of each cached endpoint.
+ * Requests are made to a local HTTP server
+ * @author Tait & Alex
+ */
+public class HttpServiceTest {
+    private final HttpService httpService = HttpService.getInstance();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger mostRunning = new AtomicInteger();
+    private volatile CountDownLatch respond = new CountDownLatch(0);
+    private HttpServer server;
+    private String address;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool()); // Serving requests at once, so they can be counted
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                respond.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            running.decrementAndGet();
+            boolean found = !exchange.getRequestURI().getPath().equals("/missing");
+            byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+            exchange.sendResponseHeaders(found ? 200 : 404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        respond.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void reusesItsConnection() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("/page" + i, httpService.getString(address + "/page" + i));
+        }
+
+        assertEquals("Every request should use the same connection", 1, clientPorts.size());
+        assertTrue(httpService.getSummary(), httpService.getSummary().contains("127.0.0.1"));
+    }
+
+    @Test
+    public void limitsRequestsToAHost() throws Exception {
+        int limit = Integer.getInteger("varpedia.maxRequestsPerHost", 8);
+        respond = new CountDownLatch(1);
+        List<Future<String>> requests = new ArrayList<>();
+        for (int i = 0; i < limit + 4; i++) {
+            String url = address + "/page" + i;
+            requests.add(ThreadPool.NETWORK.submit(() -> httpService.getString(url)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (running.get() < limit && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200); // Any requests beyond the limit would reach the server meanwhile
+        respond.countDown();
+        for (Future<String> request : requests) {
+            request.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(limit, mostRunning.get());
+    }
+
+    @Test
+    public void reportsUnsuccessfulResponses() {
+        try {
+            httpService.getString(address + "/missing");
+            fail("The request should fail");
+        } catch (IOException e) {
+            assertEquals("HTTP 404: " + address + "/missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void readsBytesOfHttpAndFileUrls() throws IOException {
+        assertArrayEquals("/image.jpg".getBytes(StandardCharsets.UTF_8),
+                httpService.getBytes(new URL(address + "/image.jpg")));
+
+        File file = File.createTempFile("image", ".jpg");
+        try {
+            Files.write(file.toPath(), new byte[]{1, 2, 3});
+            assertArrayEquals(new byte[]{1, 2, 3}, httpService.getBytes(file.toURI().toURL()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void cachesSearchesForTheirEndpointsTime() {
+        Response search = HttpService.withMaxAge(response(200,
+                "https://en.wikipedia.org/w/api.php?action=query&list=prefixsearch&pssearch=kiwi"));
+        Response extract = HttpService.withMaxAge(response(200,
+                "https://en.wikipedia.org/w/api.php?action=query&prop=extracts&titles=Kiwi"));
+        Response photos = HttpService.withMaxAge(response(200,
+                "https://api.flickr.com/services/rest/?method=flickr.photos.search&text=kiwi"));
+
+        assertEquals("public, max-age=86400", search.header("Cache-Control"));
+        assertEquals("public, max-age=604800", extract.header("Cache-Control"));
+        assertEquals("public, max-age=86400", photos.header("Cache-Control"));
+        assertNull(search.header("Pragma"));
+        assertNull(search.header("Expires"));
+        assertEquals("\"v1\"", search.header("ETag")); // Kept to revalidate the response once it is stale
+    }
+
+    @Test
+    public void leavesOtherResponsesUncached() {
+        Response image = HttpService.withMaxAge(response(200, "https://live.staticflickr.com/1/2_3.jpg"));
+        Response otherHost = HttpService.withMaxAge(response(200, "https://example.com/?list=prefixsearch"));
+        Response error = HttpService.withMaxAge(response(500,
+                "https://en.wikipedia.org/w/api.php?action=query&list=prefixsearch&pssearch=kiwi"));
+
+        for (Response response : new Response[]{image, otherHost, error}) {
+            assertEquals("no-cache", response.header("Cache-Control"));
+            assertEquals("no-cache", response.header("Pragma"));
+        }
+    }
+
+    @Test
+    public void neverCachesImages() throws IOException {
+        httpService.getString(address + "/page");
+        httpService.getString(address + "/page"); // Cached for as long as the server asks
+        httpService.getBytes(new URL(address + "/image.jpg"));
+        httpService.getBytes(new URL(address + "/image.jpg"));
+
+        assertEquals(3, requests.get());
+    }
+
+    /**
+     * A response to a URL asking not to be cached, with a validator
+     */
+    private static Response response(int code, String url) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(url).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("Test")
+                .header("Cache-Control", "no-cache")
+                .header("Pragma", "no-cache")
+                .header("Expires", "0")
+                .header("ETag", "\"v1\"")
+                .build();
+    }
+}
@@ -0,0 +1,185 @@
+package models.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link WavFile} reads the headers of WAV files however their chunks are laid out, and joins their audio
+ * @author Tait & Alex
+ */
+public class WavFileTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsCanonicalHeader() throws IOException {
+        WavFile wav = new WavFile(write("canonical.wav", wav(SAMPLE_RATE, 1, sound(SAMPLE_RATE), null, false)));
+
+        assertEquals(1, wav.getChannels());
+        assertEquals(SAMPLE_RATE, wav.getSampleRate());
+        assertEquals(16, wav.getBitsPerSample());
+        assertEquals(SAMPLE_RATE * 2, wav.getDataSize());
+        assertEquals(1.0, wav.getDuration(), 0.0001);
+    }
+
+    @Test
+    public void skipsChunksBeforeData() throws IOException {
+        // An odd-sized chunk is followed by a padding byte, which must be skipped too
+        byte[] info = "INFOabc".getBytes(StandardCharsets.US_ASCII);
+        WavFile wav = new WavFile(write("list.wav", wav(SAMPLE_RATE, 2, sound(SAMPLE_RATE), info, false)));
+
+        assertEquals(2, wav.getChannels());
+        assertEquals(SAMPLE_RATE * 4, wav.getDataSize());
+        assertEquals(1.0, wav.getDuration(), 0.0001);
+    }
+
+    @Test
+    public void limitsStreamedDataToFile() throws IOException {
+        WavFile wav = new WavFile(write("streamed.wav", wav(SAMPLE_RATE, 1, sound(SAMPLE_RATE / 2), null, true)));
+
+        assertEquals(SAMPLE_RATE, wav.getDataSize());
+        assertEquals(0.5, wav.getDuration(), 0.0001);
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        expectIOException(write("text.wav", "This is not a WAV file, only some text".getBytes(StandardCharsets.UTF_8)));
+
+        byte[] noData = Arrays.copyOf(wav(SAMPLE_RATE, 1, new short[0], null, false), 36); // Only RIFF and fmt
+        expectIOException(write("nodata.wav", noData));
+    }
+
+    @Test
+    public void comparesFormats() throws IOException {
+        WavFile mono = new WavFile(write("mono.wav", wav(SAMPLE_RATE, 1, sound(10), null, false)));
+        WavFile stereo = new WavFile(write("stereo.wav", wav(SAMPLE_RATE, 2, sound(10), null, false)));
+        WavFile faster = new WavFile(write("faster.wav", wav(44100, 1, sound(10), null, false)));
+
+        assertTrue(mono.hasSameFormat(mono));
+        assertFalse(mono.hasSameFormat(stereo));
+        assertFalse(mono.hasSameFormat(faster));
+    }
+
+    @Test
+    public void concatenatesAudio() throws IOException {
+        File first = write("first.wav", wav(SAMPLE_RATE, 1, sound(SAMPLE_RATE), null, false));
+        File second = write("second.wav", wav(SAMPLE_RATE, 1, sound(SAMPLE_RATE / 2), null, false));
+        File output = new File(temporaryFolder.getRoot(), "output.wav");
+
+        double duration = WavFile.concatenate(Arrays.asList(first, second), output);
+
+        assertEquals(1.5, duration, 0.0001);
+        WavFile wav = new WavFile(output);
+        assertEquals(1.5, wav.getDuration(), 0.0001);
+        assertEquals(44 + SAMPLE_RATE * 3, output.length());
+    }
+
+    @Test
+    public void joinReplacesSilenceBetweenPiecesWithPauses() throws IOException {
+        // A second of sound followed by half a second of silence, then half a second of silence and a second of sound
+        short[] soundThenSilence = Arrays.copyOf(sound(SAMPLE_RATE), SAMPLE_RATE * 3 / 2);
+        short[] silenceThenSound = new short[SAMPLE_RATE * 3 / 2];
+        System.arraycopy(sound(SAMPLE_RATE), 0, silenceThenSound, SAMPLE_RATE / 2, SAMPLE_RATE);
+        File first = write("first.wav", wav(SAMPLE_RATE, 1, soundThenSilence, null, false));
+        File second = write("second.wav", wav(SAMPLE_RATE, 1, silenceThenSound, null, false));
+        File output = new File(temporaryFolder.getRoot(), "output.wav");
+
+        double duration = WavFile.join(Arrays.asList(first, second), Collections.singletonList(0.25), output);
+
+        // Each side keeps 0.02 seconds of its silence as a margin, either side of the pause
+        assertEquals(1 + 0.02 + 0.25 + 0.02 + 1, duration, 0.001);
+        assertEquals(duration, new WavFile(output).getDuration(), 0.0001);
+    }
+
+    @Test
+    public void joinRejectsDifferentFormats() throws IOException {
+        File mono = write("mono.wav", wav(SAMPLE_RATE, 1, sound(10), null, false));
+        File stereo = write("stereo.wav", wav(SAMPLE_RATE, 2, sound(10), null, false));
+        try {
+            WavFile.join(Arrays.asList(mono, stereo), Collections.singletonList(0.1),
+                    new File(temporaryFolder.getRoot(), "output.wav"));
+            fail("Joining different formats should throw");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("WAV formats differ"));
+        }
+    }
+
+    /**
+     * Create a loud square wave of 16-bit samples, with no sample quiet enough to be trimmed as silence
+     */
+    private static short[] sound(int frames) {
+        short[] samples = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            samples[i] = (short) (i % 2 == 0 ? 8000 : -8000);
+        }
+        return samples;
+    }
+
+    /**
+     * Encode a 16-bit PCM WAV file
+     * @param sampleRate The sample rate
+     * @param channels The number of channels, each given the same samples
+     * @param samples The samples of each channel
+     * @param list The content of a LIST chunk to put before the data, or null for none
+     * @param streamed True to give the data chunk the placeholder size of a streamed WAV
+     * @return The bytes of the file
+     */
+    private static byte[] wav(int sampleRate, int channels, short[] samples, byte[] list, boolean streamed) {
+        int dataSize = samples.length * channels * 2;
+        int listSize = list == null ? 0 : 8 + list.length + (list.length & 1);
+        ByteBuffer buffer = ByteBuffer.allocate(44 + listSize + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(ascii("RIFF")).putInt(36 + listSize + dataSize).put(ascii("WAVE"));
+        buffer.put(ascii("fmt ")).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2)
+                .putShort((short) (channels * 2)).putShort((short) 16);
+        if (list != null) {
+            buffer.put(ascii("LIST")).putInt(list.length).put(list);
+            if ((list.length & 1) == 1) {
+                buffer.put((byte) 0);
+            }
+        }
+        buffer.put(ascii("data")).putInt(streamed ? -1 : dataSize);
+        for (short sample : samples) {
+            for (int channel = 0; channel < channels; channel++) {
+                buffer.putShort(sample);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static void expectIOException(File file) {
+        try {
+            new WavFile(file);
+            fail("Reading " + file.getName() + " should throw");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
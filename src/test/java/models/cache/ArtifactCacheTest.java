@@ -0,0 +1,166 @@
+package models.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the least recently used eviction of {@link ArtifactCache}, that the order of use survives reopening the cache
+ * through its index, and that the cache never shares storage with the files it is given or restores
+ * @author Tait & Alex
+ */
+public class ArtifactCacheTest {
+    private static final int ARTIFACT_SIZE = 100;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFolder;
+
+    @Before
+    public void createCacheFolder() throws IOException {
+        cacheFolder = temporaryFolder.newFolder("cache");
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 2 * ARTIFACT_SIZE + ARTIFACT_SIZE / 2);
+        cache.put("a", artifact("a.wav"));
+        cache.put("b", artifact("b.wav"));
+        assertNotNull(cache.get("a")); // b is now the least recently used
+
+        cache.put("c", artifact("c.wav"));
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(2, cache.getCount());
+        assertEquals(2 * ARTIFACT_SIZE, cache.getSize());
+        assertFalse(new File(cacheFolder, "b.wav").exists());
+    }
+
+    @Test
+    public void shrinkingEvictsUntilWithinMaxSize() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        cache.put("a", artifact("a.wav"));
+        cache.put("b", artifact("b.wav"));
+        cache.put("c", artifact("c.wav"));
+
+        cache.setMaxSize(ARTIFACT_SIZE);
+
+        assertEquals(1, cache.getCount());
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void reopeningKeepsOrderOfUse() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        cache.put("a", artifact("a.wav"));
+        cache.put("b", artifact("b.wav"));
+        cache.put("c", artifact("c.wav"));
+        assertNotNull(cache.get("a")); // Leaves b as the least recently used
+
+        ArtifactCache reopened = new ArtifactCache(cacheFolder, 2 * ARTIFACT_SIZE);
+
+        assertEquals(2, reopened.getCount());
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("a"));
+        assertNotNull(reopened.get("c"));
+    }
+
+    @Test
+    public void usingArtifactDoesNotChangeIt() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        cache.put("a", artifact("a.wav"));
+        setLastModified("a.wav", 1000);
+
+        assertNotNull(cache.get("a"));
+
+        assertEquals(1000, new File(cacheFolder, "a.wav").lastModified());
+    }
+
+    @Test
+    public void evictsArtifactsMissingFromIndexFirst() throws IOException {
+        Files.write(new File(cacheFolder, "old.wav").toPath(), new byte[ARTIFACT_SIZE]);
+        Files.write(new File(cacheFolder, "older.wav").toPath(), new byte[ARTIFACT_SIZE]);
+        setLastModified("old.wav", 2000);
+        setLastModified("older.wav", 1000);
+
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 2 * ARTIFACT_SIZE);
+        cache.put("a", artifact("a.wav"));
+
+        assertEquals(2, cache.getCount());
+        assertNull(cache.get("older"));
+        assertNotNull(cache.get("old"));
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void restoresArtifactToTarget() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        File source = artifact("audio.wav");
+        cache.put("a", source);
+        File target = new File(temporaryFolder.newFolder("build"), "audio.wav");
+
+        assertTrue(cache.restore("a", target));
+        assertFalse(cache.restore("missing", target));
+        assertEquals(ARTIFACT_SIZE, target.length());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void restoredAndStoredFilesAreCopies() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        File source = artifact("audio.wav");
+        cache.put("a", source);
+        File target = new File(temporaryFolder.newFolder("build"), "audio.wav");
+        assertTrue(cache.restore("a", target));
+
+        Files.write(source.toPath(), new byte[] {1, 2, 3}); // Written in place, as by a later stage
+        Files.write(target.toPath(), new byte[] {4, 5, 6});
+
+        assertArrayEquals(new byte[ARTIFACT_SIZE], Files.readAllBytes(cache.get("a").toPath()));
+    }
+
+    @Test
+    public void keysDependOnContentNotLocation() throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheFolder, 10 * ARTIFACT_SIZE);
+        File first = artifact("first.wav");
+        File second = artifact("second.wav");
+        File other = temporaryFolder.newFile("other.wav");
+        Files.write(other.toPath(), new byte[] {1});
+
+        String key = cache.key("speech").add(first).add(1.5).build();
+
+        assertEquals(key, cache.key("speech").add(second).add(1.5).build());
+        assertFalse(key.equals(cache.key("speech").add(other).add(1.5).build()));
+        assertFalse(key.equals(cache.key("speech").add(first).add(2.0).build()));
+        assertNull(cache.key("speech").add(new File(cacheFolder, "missing.wav")).build());
+    }
+
+    /**
+     * Create a file of {@code ARTIFACT_SIZE} bytes outside of the cache
+     */
+    private File artifact(String name) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        Files.write(file.toPath(), new byte[ARTIFACT_SIZE]);
+        return file;
+    }
+
+    private void setLastModified(String name, long time) {
+        assertTrue(new File(cacheFolder, name).setLastModified(time));
+    }
+}
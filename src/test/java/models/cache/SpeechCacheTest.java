@@ -0,0 +1,121 @@
+package models.cache;
+
+import javafx.concurrent.Task;
+import models.voice_synthesizer.VoiceSynthesizer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link SpeechCache} keys speech by the synthesizer's settings and the normalised text, so speech is only
+ * reused for text spoken the same way by the same voice
+ * @author Tait & Alex
+ */
+public class SpeechCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SpeechCache speechCache;
+    private File speech;
+
+    @Before
+    public void createCache() throws IOException {
+        speechCache = new SpeechCache(new ArtifactCache(temporaryFolder.newFolder("cache"), 1024 * 1024));
+        speech = temporaryFolder.newFile("speech.wav");
+        Files.write(speech.toPath(), "Hello world".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void restoresSpeechOfTheSameVoiceAndText() throws IOException {
+        speechCache.put(new StandInSynthesizer("voice=nz"), "Hello world.", speech);
+        File restored = new File(temporaryFolder.getRoot(), "restored.wav");
+
+        assertTrue(speechCache.restore(new StandInSynthesizer("voice=nz"), "Hello world.", restored));
+        assertEquals("Hello world", new String(Files.readAllBytes(restored.toPath()), StandardCharsets.UTF_8));
+        assertEquals(1, speechCache.getHits());
+    }
+
+    @Test
+    public void sharesSpeechOfTextSpokenTheSame() {
+        speechCache.put(new StandInSynthesizer("voice=nz"), "Hello  world.\n", speech);
+
+        assertTrue(restore(new StandInSynthesizer("voice=nz"), " Hello\tworld. "));
+        assertTrue(restore(new StandInSynthesizer("voice=nz"), "Hello\u00A0world.")); // A no-break space
+    }
+
+    @Test
+    public void separatesOtherTextAndVoices() {
+        speechCache.put(new StandInSynthesizer("voice=nz"), "Hello world.", speech);
+
+        assertFalse(restore(new StandInSynthesizer("voice=nz"), "Hello world!"));
+        assertFalse(restore(new StandInSynthesizer("voice=nz"), "hello world."));
+        assertFalse(restore(new StandInSynthesizer("voice=scottish"), "Hello world."));
+        assertFalse(restore(new OtherSynthesizer("voice=nz"), "Hello world."));
+        assertEquals(4, speechCache.getMisses());
+    }
+
+    private boolean restore(VoiceSynthesizer synthesizer, String text) {
+        return speechCache.restore(synthesizer, text, new File(temporaryFolder.getRoot(), "restored.wav"));
+    }
+
+    /**
+     * A stand-in synthesizer with the given settings, which never speaks
+     */
+    private static class StandInSynthesizer implements VoiceSynthesizer {
+        private final String cacheKey;
+
+        StandInSynthesizer(String cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public Task<Void> preview(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<File> save(String text, File folder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+
+        @Override
+        public String toString() {
+            return "Stand-in";
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+
+    /**
+     * Another kind of synthesizer, whose settings look the same as {@link StandInSynthesizer}'s
+     */
+    private static class OtherSynthesizer extends StandInSynthesizer {
+        OtherSynthesizer(String cacheKey) {
+            super(cacheKey);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package models.chunk;
+
+import javafx.concurrent.Task;
+import models.audio.WavFile;
+import models.voice_synthesizer.VoiceSynthesizer;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link ChunkFileManager#createAll(List)} synthesizes the pieces of every chunk in one batch, and gives each
+ * chunk the audio of its own pieces when split and unsplit chunks are mixed. Also tests that a chunk is added while
+ * its audio is synthesized in the background, and that its audio is only read once it is ready
+ * @author Tait & Alex
+ */
+public class ChunkFileManagerTest {
+    private static final String SHORT = "Short one.";
+    private static final String LONG_SENTENCE = "Wellington, the capital of New Zealand, sits near the southern tip " +
+            "of the North Island, between Cook Strait and the Remutaka Range, and is known for its wind.";
+    private static final String OTHER_SHORT = "Another short chunk here.";
+
+    /**
+     * 16 bit mono at 22050Hz, as espeak speaks
+     */
+    private static final AudioFormat FORMAT = new AudioFormat(22050, 16, 1, true, false);
+
+    /**
+     * The seconds of sound the stand-in synthesizer says each word for
+     */
+    private static final double WORD_SECONDS = 0.1;
+
+    private final ChunkFileManager chunkFileManager = ChunkFileManager.getInstance();
+
+    @After
+    public void reset() {
+        chunkFileManager.reset();
+    }
+
+    @Test
+    public void givesEachChunkTheAudioOfItsOwnPieces() throws Exception {
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+        List<ChunkFileBuilder> builders = new ArrayList<>();
+        for (String text : Arrays.asList(SHORT, LONG_SENTENCE, OTHER_SHORT)) {
+            builders.add(chunkFileManager.getBuilder().setText(text).setVoiceSynthesizer(synthesizer));
+        }
+
+        List<Chunk> chunks = chunkFileManager.createAll(builders);
+
+        List<String> pieces = new ChunkSentences(LONG_SENTENCE).getPieces();
+        List<String> texts = new ArrayList<>();
+        texts.add(SHORT);
+        texts.addAll(pieces);
+        texts.add(OTHER_SHORT);
+        assertEquals("Every piece should be synthesized in one batch, in order", texts, synthesizer.texts);
+
+        List<File> audioFiles = chunkFileManager.whenAllReady(chunks).get(10, TimeUnit.SECONDS);
+        assertEquals(3, audioFiles.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            assertEquals(new File(builders.get(i).getChunkFolder(), "audio.wav"), audioFiles.get(i));
+        }
+
+        double longSeconds = (pieces.size() - 1) * 0.1; // The pauses between clauses
+        for (String piece : pieces) {
+            longSeconds += seconds(piece);
+        }
+        assertEquals(seconds(SHORT), new WavFile(audioFiles.get(0)).getDuration(), 0.001);
+        assertEquals(longSeconds, new WavFile(audioFiles.get(1)).getDuration(), 0.001);
+        assertEquals(seconds(OTHER_SHORT), new WavFile(audioFiles.get(2)).getDuration(), 0.001);
+    }
+
+    @Test
+    public void addsChunksWhileTheirAudioIsSynthesized() throws Exception {
+        PendingSynthesizer synthesizer = new PendingSynthesizer();
+        ChunkFileBuilder builder = chunkFileManager.getBuilder().setText(SHORT).setVoiceSynthesizer(synthesizer);
+
+        chunkFileManager.create(builder);
+        Chunk chunk = builder.getChunk();
+
+        assertTrue(chunkFileManager.getItems().contains(chunk));
+        assertEquals(ChunkFileManager.AudioState.SYNTHESIZING, chunkFileManager.getAudioState(chunk));
+        assertFalse(chunkFileManager.whenReady(chunk).isDone());
+
+        File audioFile = synthesizer.finish(SHORT);
+
+        assertEquals(ChunkFileManager.AudioState.READY, chunkFileManager.getAudioState(chunk));
+        assertEquals(audioFile, chunkFileManager.whenReady(chunk).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void reportsChunksThatCouldNotBeSynthesized() throws Exception {
+        PendingSynthesizer synthesizer = new PendingSynthesizer();
+        List<Chunk> chunks = new ArrayList<>();
+        for (String text : Arrays.asList(SHORT, OTHER_SHORT)) {
+            ChunkFileBuilder builder = chunkFileManager.getBuilder().setText(text).setVoiceSynthesizer(synthesizer);
+            chunkFileManager.create(builder);
+            chunks.add(builder.getChunk());
+        }
+        CompletableFuture<List<File>> allReady = chunkFileManager.whenAllReady(chunks);
+
+        synthesizer.finish(SHORT);
+        assertFalse("The barrier should wait for every chunk", allReady.isDone());
+        synthesizer.saves.get(OTHER_SHORT).completeExceptionally(new IOException("espeak exited with 1"));
+
+        assertEquals(ChunkFileManager.AudioState.READY, chunkFileManager.getAudioState(chunks.get(0)));
+        assertEquals(ChunkFileManager.AudioState.FAILED, chunkFileManager.getAudioState(chunks.get(1)));
+        try {
+            allReady.get(10, TimeUnit.SECONDS);
+            fail("The barrier should fail when a chunk fails");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void keepsAudioBeingCopiedThroughAReset() throws Exception {
+        PendingSynthesizer synthesizer = new PendingSynthesizer();
+        ChunkFileBuilder builder = chunkFileManager.getBuilder().setText(SHORT).setVoiceSynthesizer(synthesizer);
+        chunkFileManager.create(builder);
+        File buildFolder = Files.createTempDirectory("build").toFile();
+
+        CompletableFuture<List<File>> copies = chunkFileManager.copyWhenReady(
+                Collections.singletonList(builder.getChunk()), buildFolder);
+        chunkFileManager.reset(); // Such as starting the next creation while this one is queued
+        synthesizer.finish(SHORT);
+        List<File> copied = copies.get(10, TimeUnit.SECONDS);
+
+        assertEquals(Collections.singletonList(new File(buildFolder, "0.wav")), copied);
+        assertEquals(SHORT, new String(Files.readAllBytes(copied.get(0).toPath()), StandardCharsets.UTF_8));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (builder.getChunkFolder().exists() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse("The chunk's folder should be deleted once copied", builder.getChunkFolder().exists());
+        copied.get(0).delete();
+        buildFolder.delete();
+    }
+
+    @Test
+    public void failsForChunksItDoesNotHold() {
+        assertTrue(chunkFileManager.whenReady(new Chunk(SHORT, null)).isCompletedExceptionally());
+    }
+
+    /**
+     * The seconds of sound {@link RecordingSynthesizer} says a text for
+     */
+    private static double seconds(String text) {
+        return text.split(" ").length * WORD_SECONDS;
+    }
+
+    /**
+     * A stand-in synthesizer that records the texts it is asked to save, and says each word as a tenth of a second of
+     * sound loud enough throughout that none of it is trimmed as silence
+     */
+    private static class RecordingSynthesizer implements VoiceSynthesizer {
+        private final String cacheKey = "test-" + UUID.randomUUID(); // Never restored from an earlier run
+        private final List<String> texts = new ArrayList<>();
+
+        @Override
+        public Task<Void> preview(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized CompletableFuture<File> save(String text, File folder) {
+            texts.add(text);
+            int frames = (int) Math.round(seconds(text) * FORMAT.getFrameRate());
+            byte[] samples = new byte[frames * FORMAT.getFrameSize()];
+            for (int i = 0; i < frames; i++) {
+                short sample = (short) (i % 2 == 0 ? 8000 : -8000);
+                samples[2 * i] = (byte) sample;
+                samples[2 * i + 1] = (byte) (sample >> 8);
+            }
+            File audioFile = new File(folder, "audio.wav");
+            try {
+                AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), FORMAT, frames),
+                        AudioFileFormat.Type.WAVE, audioFile);
+            } catch (IOException e) {
+                CompletableFuture<File> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            return CompletableFuture.completedFuture(audioFile);
+        }
+
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+
+        @Override
+        public String toString() {
+            return "Recording (stand-in)";
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+
+    /**
+     * A stand-in synthesizer whose speech is only saved when the test finishes it, like espeak still running
+     */
+    private static class PendingSynthesizer implements VoiceSynthesizer {
+        private final String cacheKey = "test-" + UUID.randomUUID(); // Never restored from an earlier run
+        private final Map<String, CompletableFuture<File>> saves = new ConcurrentHashMap<>();
+        private final Map<String, File> folders = new ConcurrentHashMap<>();
+
+        @Override
+        public Task<Void> preview(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<File> save(String text, File folder) {
+            folders.put(text, folder);
+            return saves.computeIfAbsent(text, key -> new CompletableFuture<>());
+        }
+
+        /**
+         * Write the text as the speech of its chunk and complete its save
+         * @return The written audio file
+         */
+        File finish(String text) throws IOException {
+            File audioFile = new File(folders.get(text), "audio.wav");
+            Files.write(audioFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            saves.get(text).complete(audioFile);
+            return audioFile;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+
+        @Override
+        public String toString() {
+            return "Pending (stand-in)";
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+}
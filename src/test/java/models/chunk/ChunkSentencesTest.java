@@ -0,0 +1,138 @@
+package models.chunk;
+
+import models.audio.WavFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link ChunkSentences} batches text into sentences and clauses, and joins their speech with pauses
+ * @author Tait & Alex
+ */
+public class ChunkSentencesTest {
+    private static final String SENTENCES = "The cat sat on the mat. It was a sunny day in the park and everyone was " +
+            "happy. Then it rained.";
+    private static final String LONG_SENTENCE = "Wellington, the capital of New Zealand, sits near the southern tip " +
+            "of the North Island, between Cook Strait and the Remutaka Range, and is known for its wind.";
+
+    /**
+     * 16 bit mono at 22050Hz, as espeak speaks
+     */
+    private static final AudioFormat FORMAT = new AudioFormat(22050, 16, 1, true, false);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keepsShortTextWhole() {
+        ChunkSentences sentences = new ChunkSentences("Short text stays whole. Even with two sentences.");
+
+        assertFalse(sentences.isSplit());
+        assertEquals(Collections.singletonList("Short text stays whole. Even with two sentences."),
+                sentences.getPieces());
+    }
+
+    @Test
+    public void splitsIntoSentencesJoiningShortOnes() {
+        ChunkSentences sentences = new ChunkSentences(SENTENCES);
+
+        assertTrue(sentences.isSplit());
+        assertEquals(Arrays.asList("The cat sat on the mat.",
+                "It was a sunny day in the park and everyone was happy. Then it rained."), sentences.getPieces());
+    }
+
+    @Test
+    public void joinsShortFirstSentenceToNext() {
+        ChunkSentences sentences = new ChunkSentences("Hi. The cat sat on the mat and watched the birds. The dog " +
+                "slept by the warm fire all afternoon.");
+
+        assertEquals(Arrays.asList("Hi. The cat sat on the mat and watched the birds.",
+                "The dog slept by the warm fire all afternoon."), sentences.getPieces());
+    }
+
+    @Test
+    public void splitsLongSentenceIntoClauses() {
+        ChunkSentences sentences = new ChunkSentences(LONG_SENTENCE);
+
+        assertEquals(Arrays.asList("Wellington, the capital of New Zealand,",
+                "sits near the southern tip of the North Island,",
+                "between Cook Strait and the Remutaka Range,",
+                "and is known for its wind."), sentences.getPieces());
+    }
+
+    @Test
+    public void createsFolderForEachPiece() throws IOException {
+        File chunkFolder = temporaryFolder.newFolder("chunk");
+
+        List<File> folders = new ChunkSentences(LONG_SENTENCE).createFolders(chunkFolder);
+
+        assertEquals(4, folders.size());
+        for (int i = 0; i < folders.size(); i++) {
+            assertTrue(folders.get(i).isDirectory());
+            assertEquals(String.valueOf(i), folders.get(i).getName());
+        }
+    }
+
+    @Test
+    public void joinsClausesWithClausePauses() throws Exception {
+        assertEquals(4 + 3 * 0.1, join(LONG_SENTENCE), 0.001);
+    }
+
+    @Test
+    public void joinsSentencesWithSentencePauses() throws Exception {
+        assertEquals(2 + 0.25, join(SENTENCES), 0.001);
+    }
+
+    /**
+     * Join a second of sound for each piece of a text
+     * @return The duration of the joined audio
+     */
+    private double join(String text) throws Exception {
+        File chunkFolder = temporaryFolder.newFolder("chunk");
+        ChunkSentences sentences = new ChunkSentences(text);
+        List<CompletableFuture<File>> pieceAudio = new ArrayList<>();
+        for (File folder : sentences.createFolders(chunkFolder)) {
+            pieceAudio.add(CompletableFuture.completedFuture(writeTone(new File(folder, "audio.wav"))));
+        }
+
+        File audioFile = sentences.join(pieceAudio, chunkFolder).get(10, TimeUnit.SECONDS);
+
+        assertEquals(new File(chunkFolder, "audio.wav"), audioFile);
+        assertFalse(new File(chunkFolder, "sentences").exists());
+        return new WavFile(audioFile).getDuration();
+    }
+
+    /**
+     * Write a second of sound loud enough throughout that none of it is trimmed as silence
+     */
+    private static File writeTone(File file) throws IOException {
+        int frames = (int) FORMAT.getFrameRate();
+        byte[] samples = new byte[frames * FORMAT.getFrameSize()];
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) (i % 2 == 0 ? 8000 : -8000);
+            samples[2 * i] = (byte) sample;
+            samples[2 * i + 1] = (byte) (sample >> 8);
+        }
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), FORMAT, frames),
+                AudioFileFormat.Type.WAVE, file);
+        return file;
+    }
+}
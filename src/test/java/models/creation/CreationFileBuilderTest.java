@@ -0,0 +1,131 @@
+package models.creation;
+
+import constants.EncodingProfile;
+import constants.Filename;
+import constants.Folder;
+import constants.Music;
+import models.chunk.Chunk;
+import models.images.ImageFileManager;
+import models.voice_synthesizer.EspeakVoiceSynthesizer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the fused render of {@link CreationFileBuilder} makes the video and thumbnail from one filter graph, with
+ * the search term drawn before the video is scaled and the background music mixed under the narration. Also tests that
+ * an edit which leaves the video unchanged is saved in the edited creation's folder without rendering, and that the
+ * segmented render reads the size its segments are fitted into from the first image's header
+ * @author Tait & Alex
+ */
+public class CreationFileBuilderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void splitsTheSlideshowIntoTheVideoAndThumbnail() {
+        String filterGraph = new CreationFileBuilder().setSearchTerm("new zealand").getFusedFilterGraph();
+
+        assertTrue(filterGraph, filterGraph.startsWith("[1:v]split=2[slides][thumb];[slides]drawtext="));
+        assertTrue(filterGraph, filterGraph.contains(":text=New Zealand,format=yuv420p[video];"));
+        assertTrue(filterGraph, filterGraph.endsWith(
+                "[thumb]scale=80:60:force_original_aspect_ratio=increase,crop=80:60[thumbnail]"));
+        assertFalse("Without music the narration is mapped as it is", filterGraph.contains("[audio]"));
+    }
+
+    @Test
+    public void scalesDraftsAfterDrawingTheSearchTerm() {
+        String filterGraph = new CreationFileBuilder().setSearchTerm("kiwi")
+                .setEncodingProfile(EncodingProfile.DRAFT).getFusedFilterGraph();
+
+        assertTrue(filterGraph, filterGraph.contains(":text=Kiwi,scale=-2:360,format=yuv420p[video];"));
+    }
+
+    @Test
+    public void mixesTheBackgroundMusicUnderTheNarration() {
+        String filterGraph = new CreationFileBuilder().setSearchTerm("kiwi").setBackgroundMusic(Music.TRACK_TWO)
+                .getFusedFilterGraph();
+
+        assertTrue(filterGraph, filterGraph.endsWith(
+                "[thumbnail];[2:a]volume=0.3[background];[0:a][background]amix=inputs=2:duration=shortest[audio]"));
+    }
+
+    @Test
+    public void savesEditsThatKeepTheVideoWithoutRendering() throws Exception {
+        CreationFileManager creationFileManager = CreationFileManager.getInstance();
+        File image = temporaryFolder.newFile("test-" + UUID.randomUUID() + ".png");
+        ImageIO.write(new BufferedImage(32, 18, BufferedImage.TYPE_INT_RGB), "png", image);
+        List<URL> images = Collections.singletonList(image.toURI().toURL());
+        ImageFileManager.getInstance().downloadImages(images).get(10, TimeUnit.SECONDS);
+        File chunkAudio = temporaryFolder.newFile("0.wav");
+
+        /* A stored creation, with a video */
+        File folder = temporaryFolder.newFolder("creation");
+        Creation edited = new Creation("Kiwi", "kiwi", "Kiwi are birds.", Collections.singletonList(
+                new Chunk("Kiwi are birds.", new EspeakVoiceSynthesizer(EspeakVoiceSynthesizer.Voice.BRITISH))),
+                images, Music.TRACK_NONE, EncodingProfile.STANDARD);
+        creationFileManager.save(edited, folder);
+        new File(folder, Filename.VIDEO.get()).createNewFile();
+
+        /* The same chunks, images, search term and music, renamed */
+        CreationFileBuilder builder = creationFileManager.getBuilder().setName("Kiwi birds").setSearchTerm("kiwi")
+                .setSearchText("Kiwi are flightless birds.").setImages(Collections.singletonList(new URL(
+                        image.toURI().toURL().toExternalForm()))).setBackgroundMusic(Music.TRACK_NONE);
+        builder.setChunks(Collections.singletonList(new Chunk("Kiwi are birds.",
+                new EspeakVoiceSynthesizer(EspeakVoiceSynthesizer.Voice.BRITISH))),
+                Collections.singletonList(chunkAudio));
+        builder.setEditedCreation(edited);
+
+        try {
+            builder.build(creationFileManager);
+
+            assertEquals(CreationFileBuilder.ProgressState.SUCCEEDED, builder.getState());
+            assertFalse(creationFileManager.getItems().contains(edited));
+            Creation saved = creationFileManager.getItems().get(creationFileManager.getItems().size() - 1);
+            assertEquals("Kiwi birds", saved.getName());
+            assertEquals(folder, creationFileManager.getFile(saved));
+            assertFalse("The unused creation folder should be removed", builder.getCreationFolder().exists());
+            creationFileManager.delete(saved);
+        } finally {
+            creationFileManager.cleanUp(builder);
+            new File(Folder.IMAGES.get(), image.getName()).delete();
+        }
+    }
+
+    @Test
+    public void readsTheSizeOfSegmentsFromTheImageHeader() throws Exception {
+        File png = temporaryFolder.newFile("photo.png");
+        File jpeg = temporaryFolder.newFile("photo.jpg");
+        ImageIO.write(new BufferedImage(641, 359, BufferedImage.TYPE_INT_RGB), "png", png);
+        ImageIO.write(new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB), "jpg", jpeg);
+
+        assertArrayEquals(new int[]{641, 359}, CreationFileBuilder.getImageSize(png));
+        assertArrayEquals(new int[]{1280, 720}, CreationFileBuilder.getImageSize(jpeg));
+    }
+
+    @Test
+    public void hasNoSizeForFilesThatAreNotImages() throws Exception {
+        File page = temporaryFolder.newFile("photo.html");
+        Files.write(page.toPath(), "<html>Not found</html>".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(CreationFileBuilder.getImageSize(page));
+        assertNull(CreationFileBuilder.getImageSize(new File(temporaryFolder.getRoot(), "missing.jpg")));
+    }
+}
@@ -0,0 +1,66 @@
+package models.creation;
+
+import constants.Folder;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link CreationFileManager} gives every build its own creation and scratch folders, so builds running at
+ * once never write each other's files, and that it removes the folders of a build that did not succeed
+ * @author Tait & Alex
+ */
+public class CreationFileManagerTest {
+    private final CreationFileManager creationFileManager = CreationFileManager.getInstance();
+
+    @Test
+    public void givesEachBuildItsOwnFolders() throws InterruptedException {
+        CreationFileBuilder first = creationFileManager.getBuilder();
+        CreationFileBuilder second = creationFileManager.getBuilder();
+
+        try {
+            assertNotEquals(first.getCreationFolder(), second.getCreationFolder());
+            assertNotEquals(first.getBuildFolder(), second.getBuildFolder());
+            for (CreationFileBuilder builder : new CreationFileBuilder[]{first, second}) {
+                assertTrue(builder.getCreationFolder().isDirectory());
+                assertTrue(builder.getBuildFolder().isDirectory());
+                assertEquals(Folder.CREATIONS.get().getAbsoluteFile(),
+                        builder.getCreationFolder().getParentFile().getAbsoluteFile());
+                assertEquals(Folder.TEMP_BUILDS.get().getAbsoluteFile(),
+                        builder.getBuildFolder().getParentFile().getAbsoluteFile());
+            }
+        } finally {
+            cleanUp(first);
+            cleanUp(second);
+        }
+    }
+
+    @Test
+    public void removesTheFoldersOfAnUnsuccessfulBuild() throws InterruptedException {
+        CreationFileBuilder builder = creationFileManager.getBuilder();
+
+        cleanUp(builder);
+
+        assertFalse(builder.getBuildFolder().exists());
+        assertFalse(builder.getCreationFolder().exists());
+    }
+
+    /**
+     * Cancel a build and wait for its folders to be removed
+     */
+    private void cleanUp(CreationFileBuilder builder) throws InterruptedException {
+        builder.cancel();
+        creationFileManager.cleanUp(builder);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((builder.getBuildFolder().exists() || builder.getCreationFolder().exists())
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package models.creation;
+
+import constants.EncodingProfile;
+import constants.Music;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that a {@link Creation} keeps its {@link EncodingProfile} when it is saved, and that creations saved before
+ * profiles existed load as standard creations
+ * @author Tait & Alex
+ */
+public class CreationTest {
+    @Test
+    public void keepsItsEncodingProfile() throws Exception {
+        Creation creation = new Creation("Kiwi", "kiwi", "Kiwi are birds.", new ArrayList<>(),
+                Collections.singletonList(new URL("https://live.staticflickr.com/1/2_3.jpg")), Music.TRACK_NONE,
+                EncodingProfile.DRAFT);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(creation);
+        }
+
+        Creation read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (Creation) in.readObject();
+        }
+
+        assertEquals("Kiwi", read.getName());
+        assertEquals(creation.getImages(), read.getImages());
+        assertEquals(EncodingProfile.DRAFT, read.getEncodingProfile());
+    }
+
+    @Test
+    public void readsCreationsSavedBeforeProfilesAsStandard() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) { // The fields an older creation wrote
+            out.writeUTF("Kiwi");
+            out.writeUTF("kiwi");
+            out.writeUTF("Kiwi are birds.");
+            out.writeObject(new ArrayList<>());
+            out.writeObject(new ArrayList<URL>());
+            out.writeObject(Music.TRACK_NONE);
+            out.writeInt(3);
+            out.writeInt(2);
+            out.writeObject(null);
+            out.writeObject(LocalDateTime.now());
+        }
+
+        Creation read = new Creation();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.readExternal(in);
+        }
+
+        assertEquals("Kiwi", read.getName());
+        assertEquals(2, read.getViewCount());
+        assertEquals(EncodingProfile.STANDARD, read.getEncodingProfile());
+    }
+
+    @Test
+    public void createsStandardCreationsByDefault() {
+        assertEquals(EncodingProfile.STANDARD, new Creation().getEncodingProfile());
+    }
+}
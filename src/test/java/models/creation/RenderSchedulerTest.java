@@ -0,0 +1,168 @@
+package models.creation;
+
+import javafx.concurrent.Task;
+import models.chunk.Chunk;
+import models.chunk.ChunkFileBuilder;
+import models.chunk.ChunkFileManager;
+import models.voice_synthesizer.VoiceSynthesizer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link RenderScheduler} starts queued jobs by priority then submission, and that cancelled jobs free their
+ * render slot or never start. One job is kept rendering by waiting on a chunk whose audio never arrives, and every other
+ * job fails as soon as it starts, as it has no chunks
+ * @author Tait & Alex
+ */
+public class RenderSchedulerTest {
+    private final RenderScheduler scheduler = new RenderScheduler(Runnable::run);
+    private final CompletableFuture<File> pendingAudio = new CompletableFuture<>();
+    private final List<String> started = new ArrayList<>();
+
+    @Before
+    public void allowOneRender() {
+        scheduler.setMaxConcurrentRenders(1);
+    }
+
+    @After
+    public void reset() {
+        pendingAudio.completeExceptionally(new CancellationException());
+        ChunkFileManager.getInstance().reset();
+    }
+
+    @Test
+    public void startsQueuedJobsByPriorityThenSubmission() {
+        RenderJob waiting = scheduler.submit(waitingBuilder());
+        RenderJob background = scheduler.submit(builder("background"), RenderScheduler.BACKGROUND_PRIORITY);
+        RenderJob first = scheduler.submit(builder("first"));
+        RenderJob urgent = scheduler.submit(builder("urgent"), 5);
+        RenderJob second = scheduler.submit(builder("second"));
+
+        assertEquals(CreationFileBuilder.ProgressState.BUILDING, waiting.getState());
+        for (RenderJob job : Arrays.asList(background, first, urgent, second)) {
+            assertEquals(CreationFileBuilder.ProgressState.QUEUED, job.getState());
+        }
+
+        scheduler.cancel(waiting);
+
+        assertEquals(Arrays.asList("waiting", "urgent", "first", "second", "background"), started);
+    }
+
+    @Test
+    public void reprioritisesQueuedJobs() {
+        RenderJob waiting = scheduler.submit(waitingBuilder());
+        scheduler.submit(builder("first"));
+        RenderJob second = scheduler.submit(builder("second"));
+
+        scheduler.setPriority(second, 1);
+        scheduler.cancel(waiting);
+
+        assertEquals(1, second.getPriority());
+        assertEquals(Arrays.asList("waiting", "second", "first"), started);
+    }
+
+    @Test
+    public void cancelledQueuedJobNeverStarts() {
+        RenderJob waiting = scheduler.submit(waitingBuilder());
+        RenderJob first = scheduler.submit(builder("first"));
+        scheduler.submit(builder("second"));
+
+        scheduler.cancel(first);
+
+        assertEquals(CreationFileBuilder.ProgressState.CANCELLED, first.getState());
+        assertEquals(Collections.singletonList("waiting"), started);
+
+        scheduler.cancel(waiting);
+
+        assertEquals(CreationFileBuilder.ProgressState.CANCELLED, waiting.getState());
+        assertEquals(Arrays.asList("waiting", "second"), started);
+    }
+
+    @Test
+    public void keepsFinishedJobsUntilCleared() {
+        RenderJob waiting = scheduler.submit(waitingBuilder());
+        RenderJob first = scheduler.submit(builder("first"));
+
+        assertEquals(Arrays.asList(waiting, first), scheduler.getJobs());
+
+        scheduler.cancel(waiting);
+        assertTrue(first.isFinished());
+        scheduler.clearFinished();
+
+        assertTrue(scheduler.getJobs().isEmpty());
+    }
+
+    /**
+     * A builder that records when it starts, and fails straight away as it has no chunks
+     */
+    private CreationFileBuilder builder(String name) {
+        CreationFileBuilder builder = CreationFileManager.getInstance().getBuilder().setName(name);
+        builder.stateProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue == CreationFileBuilder.ProgressState.BUILDING) {
+                started.add(name);
+            }
+        });
+        return builder;
+    }
+
+    /**
+     * A builder that keeps rendering until it is cancelled, waiting on the audio of its chunk
+     */
+    private CreationFileBuilder waitingBuilder() {
+        ChunkFileManager chunkFileManager = ChunkFileManager.getInstance();
+        ChunkFileBuilder chunkBuilder = chunkFileManager.getBuilder().setText("Waiting for audio.")
+                .setVoiceSynthesizer(new PendingSynthesizer());
+        List<Chunk> chunks = chunkFileManager.createAll(Collections.singletonList(chunkBuilder));
+        return builder("waiting").setChunks(chunks);
+    }
+
+    /**
+     * A stand-in synthesizer whose audio arrives only once the test has finished
+     */
+    private class PendingSynthesizer implements VoiceSynthesizer {
+        private final String cacheKey = "test-" + UUID.randomUUID(); // Never restored from an earlier run
+
+        @Override
+        public Task<Void> preview(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<File> save(String text, File folder) {
+            return pendingAudio;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+
+        @Override
+        public String toString() {
+            return "Pending (stand-in)";
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+}
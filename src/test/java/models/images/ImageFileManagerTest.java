@@ -0,0 +1,122 @@
+package models.images;
+
+import com.sun.net.httpserver.HttpServer;
+import constants.Folder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link ImageFileManager} downloads each image once however many callers request it, and tries a failed
+ * download again when the image is next requested. Images are served by a local HTTP server, which can hold requests
+ * open so that callers overlap
+ * @author Tait & Alex
+ */
+public class ImageFileManagerTest {
+    private final ImageFileManager imageFileManager = ImageFileManager.getInstance();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final CountDownLatch respond = new CountDownLatch(1);
+    private final String name = "test-" + UUID.randomUUID() + ".png"; // Never downloaded by an earlier run
+    private HttpServer server;
+    private URL image;
+
+    @Before
+    public void startServer() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(32, 18, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] body = png.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                respond.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            boolean fails = failuresLeft.getAndDecrement() > 0;
+            exchange.sendResponseHeaders(fails ? 404 : 200, fails ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (!fails) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        image = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/photos/" + name);
+    }
+
+    @After
+    public void stopServer() {
+        respond.countDown();
+        server.stop(0);
+        new File(Folder.IMAGES.get(), name).delete();
+    }
+
+    @Test
+    public void sharesOneDownloadBetweenCallers() throws Exception {
+        CompletableFuture<File> download = imageFileManager.download(image);
+
+        assertSame(download, imageFileManager.download(image));
+        assertSame(download, imageFileManager.download(new URL(image.toExternalForm())));
+        assertTrue(imageFileManager.getDownloadState(image) != ImageFileManager.DownloadState.READY);
+
+        respond.countDown();
+        File imageFile = download.get(10, TimeUnit.SECONDS);
+        List<File> imageFiles = imageFileManager.downloadImages(Arrays.asList(image, image)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, requests.get());
+        assertEquals(new File(Folder.IMAGES.get(), name), imageFile);
+        assertEquals(Arrays.asList(imageFile, imageFile), imageFiles);
+        assertEquals(imageFile, imageFileManager.getFile(new URL(image.toExternalForm())));
+        assertEquals(ImageFileManager.DownloadState.READY, imageFileManager.getDownloadState(image));
+    }
+
+    @Test
+    public void triesAFailedDownloadAgain() throws Exception {
+        failuresLeft.set(1);
+        respond.countDown();
+
+        try {
+            imageFileManager.download(image).get(10, TimeUnit.SECONDS);
+            fail("The first download should fail");
+        } catch (ExecutionException expected) {
+        }
+        assertEquals(ImageFileManager.DownloadState.FAILED, imageFileManager.getDownloadState(image));
+
+        File imageFile = imageFileManager.download(image).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, requests.get());
+        assertTrue(imageFile.exists());
+        assertEquals(ImageFileManager.DownloadState.READY, imageFileManager.getDownloadState(image));
+    }
+
+    @Test
+    public void hasNoStateForImagesNotRequested() {
+        assertNull(imageFileManager.getDownloadState(image));
+        assertNull(imageFileManager.getDownloadState(null));
+    }
+}
@@ -0,0 +1,125 @@
+package models.images;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link ImageScaler} crops the centre of an image to the target's aspect ratio and scales it to the target
+ * size, whether the image is wider, taller, smaller or larger than the target
+ * @author Tait & Alex
+ */
+public class ImageScalerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void cropsTheSidesOfAWideImage() {
+        // The centre 16:9 part of a 400x100 image is 178 pixels wide, from x = 111, all within the green band
+        BufferedImage image = bands(400, 100, true);
+
+        BufferedImage scaled = ImageScaler.scaleAndCrop(image, 160, 90);
+
+        assertEquals(160, scaled.getWidth());
+        assertEquals(90, scaled.getHeight());
+        assertGreen(scaled);
+    }
+
+    @Test
+    public void cropsTheTopAndBottomOfATallImage() {
+        // The centre 16:9 part of a 100x400 image is 56 pixels tall, from y = 172, all within the green band
+        BufferedImage image = bands(100, 400, false);
+
+        BufferedImage scaled = ImageScaler.scaleAndCrop(image, 160, 90);
+
+        assertEquals(160, scaled.getWidth());
+        assertEquals(90, scaled.getHeight());
+        assertGreen(scaled);
+    }
+
+    @Test
+    public void shrinksLargeImagesInSteps() {
+        BufferedImage scaled = ImageScaler.scaleAndCrop(bands(4000, 1000, true), 160, 90);
+
+        assertEquals(160, scaled.getWidth());
+        assertEquals(90, scaled.getHeight());
+        assertGreen(scaled);
+    }
+
+    @Test
+    public void enlargesSmallImages() {
+        BufferedImage scaled = ImageScaler.scaleAndCrop(bands(40, 20, true), 160, 90);
+
+        assertEquals(160, scaled.getWidth());
+        assertEquals(90, scaled.getHeight());
+    }
+
+    @Test
+    public void writesTheImageAtTheVideoSize() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(bands(800, 600, true), "png", png);
+        File imageFile = new File(temporaryFolder.getRoot(), "photo.jpg");
+
+        ImageScaler.scaleAndCrop(png.toByteArray(), imageFile);
+
+        BufferedImage written = ImageIO.read(imageFile);
+        assertEquals(ImageScaler.WIDTH, written.getWidth());
+        assertEquals(ImageScaler.HEIGHT, written.getHeight());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDataThatIsNotAnImage() throws IOException {
+        ImageScaler.scaleAndCrop("<html>Not found</html>".getBytes(StandardCharsets.UTF_8),
+                new File(temporaryFolder.getRoot(), "photo.jpg"));
+    }
+
+    /**
+     * Draw an image in three bands, red then green then blue, the outer bands each a quarter of the image
+     * @param horizontal True for bands side by side, false for bands on top of each other
+     */
+    private static BufferedImage bands(int width, int height, boolean horizontal) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        int length = horizontal ? width : height;
+        int[] ends = {length / 4, length - length / 4, length};
+        Color[] colours = {Color.RED, Color.GREEN, Color.BLUE};
+        int start = 0;
+        for (int i = 0; i < colours.length; i++) {
+            graphics.setColor(colours[i]);
+            if (horizontal) {
+                graphics.fillRect(start, 0, ends[i] - start, height);
+            } else {
+                graphics.fillRect(0, start, width, ends[i] - start);
+            }
+            start = ends[i];
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Check that every corner and the centre of an image are green, so none of the outer bands were kept
+     */
+    private static void assertGreen(BufferedImage image) {
+        int right = image.getWidth() - 1;
+        int bottom = image.getHeight() - 1;
+        int[][] points = {{0, 0}, {right, 0}, {0, bottom}, {right, bottom}, {right / 2, bottom / 2}};
+        for (int[] point : points) {
+            Color colour = new Color(image.getRGB(point[0], point[1]));
+            assertTrue(String.format("(%d, %d) is %s", point[0], point[1], colour),
+                    colour.getGreen() > 200 && colour.getRed() < 50 && colour.getBlue() < 50);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package models.images;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link XMLParser} reads the photos of Flickr search responses as they stream, and reports errors
+ * @author Tait & Alex
+ */
+public class XMLParserTest {
+    private static final String RESPONSE = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+            "<rsp stat=\"ok\">\n" +
+            "<photos page=\"1\" pages=\"10\" perpage=\"3\" total=\"30\">\n" +
+            "  <photo id=\"101\" owner=\"12@N01\" title=\"Harbour\"" +
+            " url_m=\"https://live.staticflickr.com/1/101_a.jpg\" height_m=\"333\" width_m=\"500\" />\n" +
+            "  <photo id=\"102\" owner=\"34@N02\" title=\"No image\" url_m=\"\" />\n" +
+            "  <photo id=\"103\" owner=\"56@N03\" title=\"Relative\" url_m=\"images/103.jpg\" />\n" +
+            "  <photo id=\"104\" owner=\"78@N04\" title=\"Bad space\"" +
+            " url_m=\"https://live.staticflickr.com/1/1 04.jpg\" />\n" +
+            "  <photo id=\"105\" owner=\"90@N05\" title=\"Odd size\"" +
+            " url_m=\"https://live.staticflickr.com/1/105_b.jpg\" height_m=\"tall\" />\n" +
+            "</photos>\n" +
+            "</rsp>";
+
+    @Test
+    public void readsPhotosWithValidUrls() throws IOException {
+        List<FlickrPhoto> photos = new XMLParser().parse(stream(RESPONSE));
+
+        assertEquals(2, photos.size());
+        FlickrPhoto photo = photos.get(0);
+        assertEquals("101", photo.getId());
+        assertEquals("12@N01", photo.getOwner());
+        assertEquals("https://live.staticflickr.com/1/101_a.jpg", photo.getUrl().toExternalForm());
+        assertEquals(500, photo.getWidth());
+        assertEquals(333, photo.getHeight());
+
+        FlickrPhoto oddSize = photos.get(1);
+        assertEquals("105", oddSize.getId());
+        assertEquals(0, oddSize.getWidth());
+        assertEquals(0, oddSize.getHeight());
+    }
+
+    @Test
+    public void givesEachPhotoAsItIsRead() throws IOException {
+        List<String> ids = new ArrayList<>();
+
+        int count = new XMLParser().parse(stream(RESPONSE), photo -> ids.add(photo.getId()));
+
+        assertEquals(2, count);
+        assertEquals("101", ids.get(0));
+        assertEquals("105", ids.get(1));
+    }
+
+    @Test
+    public void reportsFlickrErrors() {
+        String response = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+                "<rsp stat=\"fail\">\n" +
+                "  <err code=\"100\" msg=\"Invalid API Key (Key has invalid format)\" />\n" +
+                "</rsp>";
+        try {
+            new XMLParser().parse(stream(response));
+            fail("A failed search should throw");
+        } catch (IOException e) {
+            assertEquals("Flickr search failed: Invalid API Key (Key has invalid format)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void reportsInvalidXml() {
+        try {
+            new XMLParser().parse(stream("<rsp stat=\"ok\"><photos><photo id=\"1\"</photos>"));
+            fail("Invalid XML should throw");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Could not parse"));
+        }
+    }
+
+    @Test
+    public void doesNotReadExternalEntities() {
+        String response = "<?xml version=\"1.0\"?>\n" +
+                "<!DOCTYPE rsp [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>\n" +
+                "<rsp stat=\"ok\"><photos><photo id=\"&secret;\" url_m=\"https://example.com/1.jpg\" /></photos></rsp>";
+        try {
+            List<FlickrPhoto> photos = new XMLParser().parse(stream(response));
+            for (FlickrPhoto photo : photos) {
+                assertTrue(photo.getId() == null || !photo.getId().contains("root"));
+            }
+        } catch (IOException e) {
+            // Rejecting the response is also safe
+        }
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,66 @@
+package models.voice_synthesizer;
+
+import models.audio.WavFile;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link SilentVoiceSynthesizer} is found through {@link VoiceSynthesizerRegistry}, and saves silence as
+ * long as the text would take to say
+ * @author Tait & Alex
+ */
+public class SilentVoiceSynthesizerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* The registry loads its providers once, so the stand-in must be enabled before it is first used */
+    @BeforeClass
+    public static void enableSilentSynthesizer() {
+        System.setProperty("varpedia.silentSynthesizer", "true");
+    }
+
+    @Test
+    public void resolvesThroughRegistry() {
+        VoiceSynthesizerRegistry registry = VoiceSynthesizerRegistry.getInstance();
+        VoiceSynthesizer voice = registry.findVoice("silent (stand-in)");
+
+        assertTrue(voice instanceof SilentVoiceSynthesizer);
+        VoiceSynthesizerProvider provider = registry.getProvider(voice);
+        assertNotNull(provider);
+        assertEquals("silent", provider.getName());
+        assertTrue(provider.getCapabilities().isEmpty());
+    }
+
+    @Test
+    public void savesSilenceForTheLengthOfTheText() throws Exception {
+        VoiceSynthesizer voice = VoiceSynthesizerRegistry.getInstance().findVoice("Silent (stand-in)");
+        String text = "Wellington is the capital of New Zealand."; // 41 characters, 0.06 seconds each
+
+        File audioFile = voice.save(text, folder.getRoot()).get(10, TimeUnit.SECONDS);
+
+        WavFile wav = new WavFile(audioFile);
+        assertEquals(new File(folder.getRoot(), "audio.wav"), audioFile);
+        assertEquals(22050, wav.getSampleRate());
+        assertEquals(16, wav.getBitsPerSample());
+        assertEquals(1, wav.getChannels());
+        assertEquals(41 * 0.06, wav.getDuration(), 0.001);
+    }
+
+    @Test
+    public void savesAtLeastHalfASecond() throws Exception {
+        VoiceSynthesizer voice = VoiceSynthesizerRegistry.getInstance().findVoice("Silent (stand-in)");
+
+        File audioFile = voice.save("Hi", folder.getRoot()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(0.5, new WavFile(audioFile).getDuration(), 0.001);
+    }
+}
@@ -0,0 +1,34 @@
+package models.voice_synthesizer;
+
+import main.ProcessMetrics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link SpeechPreview} reports why its synthesizer failed, and records the run like any other process
+ * @author Tait & Alex
+ */
+public class SpeechPreviewTest {
+
+    @Test
+    public void reportsErrorsOfFailedSynthesizer() throws Exception {
+        ProcessMetrics.getInstance().clear();
+        SpeechPreview preview = new SpeechPreview(new SilentVoiceSynthesizer(), "Hello",
+                Arrays.asList("sh", "-c", "echo 'Unknown voice: klingon' >&2; exit 3"));
+        try {
+            preview.call();
+            fail("A failed synthesizer should fail the preview");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Failed command (exit 3): sh -c"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("Unknown voice: klingon"));
+        }
+        assertEquals(1, ProcessMetrics.getInstance().getRuns("previewSpeech").size());
+        assertEquals(3, ProcessMetrics.getInstance().getRuns("previewSpeech").get(0).getExitValue());
+    }
+}
@@ -0,0 +1,101 @@
+package models.voice_synthesizer;
+
+import javafx.concurrent.Task;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link VoiceSynthesizer#saveAll(List, List)} synthesizes each distinct text once, and copies the speech
+ * of repeated texts into their own folders
+ * @author Tait & Alex
+ */
+public class VoiceSynthesizerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void synthesizesRepeatedTextsOnce() throws Exception {
+        RecordingSynthesizer synthesizer = new RecordingSynthesizer();
+        List<String> texts = Arrays.asList("Kia ora.", "Hello.", "Kia ora.", "Kia ora.");
+        List<File> folders = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            folders.add(temporaryFolder.newFolder(Integer.toString(i)));
+        }
+
+        List<CompletableFuture<File>> audio = synthesizer.saveAll(texts, folders);
+
+        assertEquals(Arrays.asList("Kia ora.", "Hello."), synthesizer.texts);
+        assertEquals(texts.size(), audio.size());
+        for (int i = 0; i < texts.size(); i++) {
+            File audioFile = audio.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(new File(folders.get(i), "audio.wav"), audioFile);
+            assertEquals(texts.get(i), new String(Files.readAllBytes(audioFile.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsAFolderForEveryText() throws IOException {
+        new RecordingSynthesizer().saveAll(Arrays.asList("One.", "Two."),
+                Collections.singletonList(temporaryFolder.newFolder()));
+    }
+
+    /**
+     * A stand-in synthesizer that records the texts it is asked to save, and saves each text as its audio
+     */
+    private static class RecordingSynthesizer implements VoiceSynthesizer {
+        private final List<String> texts = new ArrayList<>();
+
+        @Override
+        public Task<Void> preview(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<File> save(String text, File folder) {
+            texts.add(text);
+            File audioFile = new File(folder, "audio.wav");
+            try {
+                Files.write(audioFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                CompletableFuture<File> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            return CompletableFuture.completedFuture(audioFile);
+        }
+
+        @Override
+        public String getCacheKey() {
+            return "recording";
+        }
+
+        @Override
+        public String toString() {
+            return "Recording (stand-in)";
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+}
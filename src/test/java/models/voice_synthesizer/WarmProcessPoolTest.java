@@ -0,0 +1,109 @@
+package models.voice_synthesizer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link WarmProcessPool} keeps a bounded number of processes started for each voice, gives text to them,
+ * and reports why a process failed
+ * @author Tait & Alex
+ */
+public class WarmProcessPoolTest {
+    private static final String VOICE = "test:cat";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final WarmProcessPool pool = new WarmProcessPool();
+    private final AtomicInteger started = new AtomicInteger();
+
+    /**
+     * A stand-in engine that copies its input to its output file
+     */
+    private final Function<File, List<String>> copy = output -> {
+        started.incrementAndGet();
+        return Arrays.asList("sh", "-c", "cat > '" + output.getPath() + "'");
+    };
+
+    @After
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void concurrentWarmUpsStartAtMostTwoProcesses() throws Exception {
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                pool.warmUp(VOICE, copy);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        ready.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        awaitStarted(2);
+        Thread.sleep(200); // Any extra processes would be started meanwhile
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    public void givesTextToWarmProcess() throws Exception {
+        pool.warmUp(VOICE, copy);
+        awaitStarted(2);
+        Thread.sleep(200); // Letting the started processes be added to the idle processes
+        File target = new File(temporaryFolder.getRoot(), "audio.wav");
+
+        pool.run(VOICE, copy, "Kia ora", target, "test");
+
+        assertEquals("Kia ora", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+        assertEquals(1, pool.getWarmRuns());
+        assertEquals(0, pool.getColdRuns());
+        awaitStarted(3); // The process that was taken is replaced
+    }
+
+    @Test
+    public void reportsOutputOfFailedProcess() throws Exception {
+        Function<File, List<String>> failing = output ->
+                Arrays.asList("sh", "-c", "cat > /dev/null; echo 'Unknown voice: klingon' >&2; exit 2");
+        try {
+            pool.run("test:failing", failing, "Hello", new File(temporaryFolder.getRoot(), "audio.wav"), "test");
+            fail("A failed process should throw");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Failed command (exit 2): sh -c"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("Unknown voice: klingon"));
+        }
+    }
+
+    private void awaitStarted(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && started.get() < count; i++) {
+            Thread.sleep(20);
+        }
+    }
+}